@@ -0,0 +1,483 @@
+package com.feiyan.lightdao.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * Generate a RowMapper for every table class and multi-table query class, so that rows can be
+ * read and written with direct field access instead of reflection.
+ *
+ * @author zhangfei
+ */
+public class RowMapperProcessor extends AbstractProcessor {
+    private static final String ANNOTATION_PACKAGE = "com.feiyan.lightdao.annotation.";
+    private static final String COLUMN = ANNOTATION_PACKAGE + "Column";
+    private static final String ROW_MAPPER = "com.feiyan.lightdao.RowMapper";
+    private static final String ENTITY = "com.feiyan.lightdao.Entity";
+    private static final String ROW_MAPPER_SUFFIX = "_RowMapper";
+    private static final String ID_COLUMN = "_id";
+
+    private static final List<String> TYPE_ANNOTATIONS = Arrays.asList(
+            ANNOTATION_PACKAGE + "Table",
+            ANNOTATION_PACKAGE + "InnerJoin",
+            ANNOTATION_PACKAGE + "LeftJoin",
+            ANNOTATION_PACKAGE + "CrossJoin",
+            ANNOTATION_PACKAGE + "NaturalJoin");
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return new HashSet<>(TYPE_ANNOTATIONS);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        Set<TypeElement> classes = new HashSet<>();
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() == ElementKind.CLASS) {
+                    classes.add((TypeElement) element);
+                }
+            }
+        }
+
+        for (TypeElement clazz : classes) {
+            List<ColumnField> columns = readColumns(clazz);
+            if (columns != null) {
+                writeMapper(clazz, columns);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Read column fields of class and its super classes, super class fields go first.
+     *
+     * @return columns or null if class cannot be mapped without reflection
+     */
+    private List<ColumnField> readColumns(TypeElement clazz) {
+        if (!isInstantiable(clazz)) {
+            note(clazz, "no accessible empty constructor");
+            return null;
+        }
+
+        String packageName = getPackageName(clazz);
+        List<ColumnField> columns = new ArrayList<>();
+        TypeElement current = clazz;
+        while (current != null && !current.getQualifiedName().contentEquals(Object.class.getName())) {
+            List<ColumnField> declared = new ArrayList<>();
+            for (VariableElement field : ElementFilter.fieldsIn(current.getEnclosedElements())) {
+                Set<Modifier> modifiers = field.getModifiers();
+                if (modifiers.contains(Modifier.STATIC)) {
+                    continue;
+                }
+
+                AnnotationMirror column = getAnnotation(field, COLUMN);
+                if (column == null) {
+                    continue;
+                }
+
+                String fieldName = field.getSimpleName().toString();
+                boolean accessible = !modifiers.contains(Modifier.PRIVATE)
+                        && !modifiers.contains(Modifier.FINAL)
+                        && (modifiers.contains(Modifier.PUBLIC) || packageName.equals(getPackageName(current)));
+                if (!accessible) {
+                    note(clazz, "field [" + fieldName + "] is not accessible");
+                    return null;
+                }
+
+                DataType dataType = DataType.of(field.asType());
+                if (dataType == null) {
+                    note(clazz, "field [" + fieldName + "] is not supported");
+                    return null;
+                }
+
+                String columnName = getStringValue(column, "name");
+                if (columnName == null || columnName.isEmpty()) {
+                    columnName = fieldName;
+                }
+                declared.add(new ColumnField(fieldName, columnName, dataType));
+            }
+            columns.addAll(0, declared);
+            current = getSuperclass(current);
+        }
+        return columns;
+    }
+
+    private void writeMapper(TypeElement clazz, List<ColumnField> columns) {
+        String packageName = getPackageName(clazz);
+        String binaryName = processingEnv.getElementUtils().getBinaryName(clazz).toString();
+        String mapperName = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1))
+                + ROW_MAPPER_SUFFIX;
+        String className = clazz.getQualifiedName().toString();
+
+        StringBuilder buffer = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            buffer.append("package ").append(packageName).append(";\n\n");
+        }
+        buffer.append("import android.content.ContentValues;\n");
+        buffer.append("import android.database.Cursor;\n");
+        buffer.append("import android.database.sqlite.SQLiteProgram;\n\n");
+        buffer.append("/**\n * Generated by light-dao-processor, do not modify.\n */\n");
+        buffer.append("public final class ").append(mapperName)
+                .append(" implements ").append(ROW_MAPPER).append("<").append(className).append("> {\n");
+
+        // column names
+        buffer.append("    private static final String[] COLUMN_NAMES = {");
+        for (int i = 0; i < columns.size(); i++) {
+            buffer.append(i > 0 ? ", " : "").append(quote(columns.get(i).columnName));
+        }
+        buffer.append("};\n\n");
+
+        buffer.append("    @Override\n");
+        buffer.append("    public ").append(className).append(" newInstance() {\n");
+        buffer.append("        return new ").append(className).append("();\n");
+        buffer.append("    }\n\n");
+
+        buffer.append("    @Override\n");
+        buffer.append("    public String[] getColumnNames() {\n");
+        buffer.append("        return COLUMN_NAMES;\n");
+        buffer.append("    }\n\n");
+
+        // restore
+        buffer.append("    @Override\n");
+        buffer.append("    public void restore(").append(className)
+                .append(" target, Cursor cursor, int[] columnIndexes) {\n");
+        buffer.append("        int index;\n");
+        for (int i = 0; i < columns.size(); i++) {
+            ColumnField column = columns.get(i);
+            buffer.append("        if ((index = columnIndexes[").append(i).append("]) >= 0) {\n");
+            buffer.append("            target.").append(column.fieldName).append(" = ")
+                    .append(column.dataType.cursorRead("index")).append(";\n");
+            buffer.append("        }\n");
+        }
+        buffer.append("    }\n\n");
+
+        // content values
+        buffer.append("    @Override\n");
+        buffer.append("    public void toContentValues(").append(className)
+                .append(" source, ContentValues values) {\n");
+        for (ColumnField column : columns) {
+            String value = "source." + column.fieldName;
+            String put = "values.put(" + quote(column.columnName) + ", "
+                    + column.dataType.contentValue(value) + ");\n";
+            if (ID_COLUMN.equals(column.columnName) && column.dataType == DataType.LONG) {
+                // id of record not saved yet will be generated by auto increment
+                buffer.append("        if (").append(value).append(" != ").append(ENTITY).append(".NOT_SAVED) {\n");
+                buffer.append("            ").append(put);
+                buffer.append("        }\n");
+            } else if (!column.dataType.primitive) {
+                buffer.append("        if (").append(value).append(" != null) {\n");
+                buffer.append("            ").append(put);
+                buffer.append("        }\n");
+            } else {
+                buffer.append("        ").append(put);
+            }
+        }
+        buffer.append("    }\n\n");
+
+        // values
+        buffer.append("    @Override\n");
+        buffer.append("    public void getValues(").append(className)
+                .append(" source, Object[] values) {\n");
+        for (int i = 0; i < columns.size(); i++) {
+            buffer.append("        values[").append(i).append("] = source.")
+                    .append(columns.get(i).fieldName).append(";\n");
+        }
+        buffer.append("    }\n\n");
+
+        // set values
+        buffer.append("    @Override\n");
+        buffer.append("    public void setValues(").append(className)
+                .append(" target, Object[] values) {\n");
+        for (int i = 0; i < columns.size(); i++) {
+            ColumnField column = columns.get(i);
+            buffer.append("        target.").append(column.fieldName).append(" = ")
+                    .append(column.dataType.cast("values[" + i + "]")).append(";\n");
+        }
+        buffer.append("    }\n\n");
+
+        // bind args
+        buffer.append("    @Override\n");
+        buffer.append("    public void toBindArgs(").append(className)
+                .append(" source, Object[] bindArgs) {\n");
+        for (int i = 0; i < columns.size(); i++) {
+            ColumnField column = columns.get(i);
+            String value = "source." + column.fieldName;
+            buffer.append("        bindArgs[").append(i).append("] = ");
+            if (column.dataType.primitive) {
+                buffer.append(value);
+            } else {
+                buffer.append(value).append(" != null ? (Object) ").append(value)
+                        .append(" : (Object) ").append(column.dataType.defaultValue);
+            }
+            buffer.append(";\n");
+        }
+        buffer.append("    }\n\n");
+
+        // bind statement
+        buffer.append("    @Override\n");
+        buffer.append("    public void bind(").append(className)
+                .append(" source, SQLiteProgram program, int[] bindIndexes) {\n");
+        buffer.append("        int index;\n");
+        for (int i = 0; i < columns.size(); i++) {
+            ColumnField column = columns.get(i);
+            buffer.append("        if ((index = bindIndexes[").append(i).append("]) > 0) {\n");
+            buffer.append("            ").append(column.dataType.bind("index", "source." + column.fieldName))
+                    .append(";\n");
+            buffer.append("        }\n");
+        }
+        buffer.append("    }\n");
+        buffer.append("}\n");
+
+        String qualifiedMapperName = packageName.isEmpty() ? mapperName : packageName + "." + mapperName;
+        Writer writer = null;
+        try {
+            JavaFileObject file = processingEnv.getFiler().createSourceFile(qualifiedMapperName, clazz);
+            writer = file.openWriter();
+            writer.write(buffer.toString());
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Cannot write " + qualifiedMapperName + ": " + e.getMessage(), clazz);
+        } finally {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private boolean isInstantiable(TypeElement clazz) {
+        Set<Modifier> modifiers = clazz.getModifiers();
+        if (modifiers.contains(Modifier.ABSTRACT) || modifiers.contains(Modifier.PRIVATE)) {
+            return false;
+        }
+
+        if (clazz.getNestingKind() != NestingKind.TOP_LEVEL && !modifiers.contains(Modifier.STATIC)) {
+            return false;
+        }
+
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(clazz.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty()) {
+                return !constructor.getModifiers().contains(Modifier.PRIVATE);
+            }
+        }
+        return false;
+    }
+
+    private TypeElement getSuperclass(TypeElement clazz) {
+        TypeMirror superclass = clazz.getSuperclass();
+        if (superclass.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        return (TypeElement) ((DeclaredType) superclass).asElement();
+    }
+
+    private String getPackageName(TypeElement clazz) {
+        PackageElement packageElement = processingEnv.getElementUtils().getPackageOf(clazz);
+        return packageElement.isUnnamed() ? "" : packageElement.getQualifiedName().toString();
+    }
+
+    private static AnnotationMirror getAnnotation(Element element, String annotationName) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            TypeElement type = (TypeElement) mirror.getAnnotationType().asElement();
+            if (type.getQualifiedName().contentEquals(annotationName)) {
+                return mirror;
+            }
+        }
+        return null;
+    }
+
+    private static String getStringValue(AnnotationMirror mirror, String name) {
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+                : mirror.getElementValues().entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals(name)) {
+                return String.valueOf(entry.getValue().getValue());
+            }
+        }
+        return null;
+    }
+
+    private static String quote(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    private void note(TypeElement clazz, String reason) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                "RowMapper is not generated for " + clazz.getQualifiedName() + ", " + reason
+                        + ", reflection will be used.", clazz);
+    }
+
+    private static class ColumnField {
+        final String fieldName;
+        final String columnName;
+        final DataType dataType;
+
+        ColumnField(String fieldName, String columnName, DataType dataType) {
+            this.fieldName = fieldName;
+            this.columnName = columnName;
+            this.dataType = dataType;
+        }
+    }
+
+    /**
+     * Field data types supported by light-dao.
+     */
+    private enum DataType {
+        INT("int", true, "getInt", "0"),
+        INTEGER("java.lang.Integer", false, "getInt", "0"),
+        LONG("long", true, "getLong", "0L"),
+        LONG_OBJECT("java.lang.Long", false, "getLong", "0L"),
+        SHORT("short", true, "getShort", "(short) 0"),
+        SHORT_OBJECT("java.lang.Short", false, "getShort", "(short) 0"),
+        DOUBLE("double", true, "getDouble", "0d"),
+        DOUBLE_OBJECT("java.lang.Double", false, "getDouble", "0d"),
+        FLOAT("float", true, "getFloat", "0f"),
+        FLOAT_OBJECT("java.lang.Float", false, "getFloat", "0f"),
+        BOOLEAN("boolean", true, null, "false"),
+        BOOLEAN_OBJECT("java.lang.Boolean", false, null, "false"),
+        STRING("java.lang.String", false, "getString", "\"\""),
+        BLOB("byte[]", false, "getBlob", "new byte[0]");
+
+        final String typeName;
+        final boolean primitive;
+        final String cursorGetter;
+        final String defaultValue;
+
+        DataType(String typeName, boolean primitive, String cursorGetter, String defaultValue) {
+            this.typeName = typeName;
+            this.primitive = primitive;
+            this.cursorGetter = cursorGetter;
+            this.defaultValue = defaultValue;
+        }
+
+        static DataType of(TypeMirror type) {
+            String typeName;
+            if (type.getKind().isPrimitive()) {
+                typeName = type.getKind().name().toLowerCase(Locale.US);
+            } else if (type.getKind() == TypeKind.ARRAY
+                    && ((ArrayType) type).getComponentType().getKind() == TypeKind.BYTE) {
+                typeName = "byte[]";
+            } else if (type.getKind() == TypeKind.DECLARED) {
+                typeName = ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().toString();
+            } else {
+                return null;
+            }
+
+            for (DataType dataType : values()) {
+                if (dataType.typeName.equals(typeName)) {
+                    return dataType;
+                }
+            }
+            return null;
+        }
+
+        String cursorRead(String index) {
+            if (this == BOOLEAN || this == BOOLEAN_OBJECT) {
+                return "cursor.getInt(" + index + ") == 1";
+            }
+            return "cursor." + cursorGetter + "(" + index + ")";
+        }
+
+        String bind(String index, String value) {
+            String method;
+            if (this == STRING) {
+                method = "bindString";
+            } else if (this == BLOB) {
+                method = "bindBlob";
+            } else if (this == DOUBLE || this == DOUBLE_OBJECT || this == FLOAT || this == FLOAT_OBJECT) {
+                method = "bindDouble";
+            } else {
+                method = "bindLong";
+            }
+
+            String argument;
+            if (this == BOOLEAN) {
+                argument = value + " ? 1 : 0";
+            } else if (this == BOOLEAN_OBJECT) {
+                argument = value + " != null && " + value + " ? 1 : 0";
+            } else if (primitive) {
+                argument = value;
+            } else {
+                argument = value + " != null ? " + value + " : " + defaultValue;
+            }
+            return "program." + method + "(" + index + ", " + argument + ")";
+        }
+
+        /**
+         * Cast value of Object type to field type, primitive is unboxed from its wrapper.
+         */
+        String cast(String value) {
+            String castType;
+            switch (this) {
+                case INT:
+                    castType = INTEGER.typeName;
+                    break;
+                case LONG:
+                    castType = LONG_OBJECT.typeName;
+                    break;
+                case SHORT:
+                    castType = SHORT_OBJECT.typeName;
+                    break;
+                case DOUBLE:
+                    castType = DOUBLE_OBJECT.typeName;
+                    break;
+                case FLOAT:
+                    castType = FLOAT_OBJECT.typeName;
+                    break;
+                case BOOLEAN:
+                    castType = BOOLEAN_OBJECT.typeName;
+                    break;
+                default:
+                    castType = typeName;
+                    break;
+            }
+            return "(" + castType + ") " + value;
+        }
+
+        String contentValue(String value) {
+            if (this == BOOLEAN) {
+                return value + " ? 1 : 0";
+            } else if (this == BOOLEAN_OBJECT) {
+                return value + ".booleanValue() ? 1 : 0";
+            } else {
+                // values keep their own type, primitives are boxed to the matching put() overload
+                return value;
+            }
+        }
+    }
+}
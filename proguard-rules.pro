@@ -23,3 +23,8 @@
 # If you keep the line number information, uncomment this to
 # hide the original source file name.
 #-renamesourcefileattribute SourceFile
+
+# Keep compile time generated row mappers, they are looked up by class name
+-keep class * implements com.feiyan.lightdao.RowMapper {
+    public <init>();
+}
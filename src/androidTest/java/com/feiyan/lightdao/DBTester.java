@@ -4,7 +4,9 @@ import android.content.ContentValues;
 import android.content.Context;
 import android.support.test.InstrumentationRegistry;
 import android.support.test.runner.AndroidJUnit4;
+import android.support.v4.util.LongSparseArray;
 
+import com.feiyan.lightdao.tables.Course;
 import com.feiyan.lightdao.tables.Relation;
 import com.feiyan.lightdao.tables.Student;
 import com.feiyan.lightdao.tables.Teacher;
@@ -15,6 +17,8 @@ import org.junit.runner.RunWith;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertTrue;
 
@@ -60,6 +64,155 @@ public class DBTester {
         assertTrue(count == students.size());
     }
 
+    @Test
+    public void testSaveAllWritesBackIds(){
+        List<Student> students = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Student student = new Student();
+            student.name = "name " + i;
+            student.age = i;
+            student.teacherId = 1;
+            students.add(student);
+        }
+        DBHelper.with(mContext).saveAll(students);
+        for (Student student : students) {
+            assertTrue(student.id != Entity.NOT_SAVED);
+        }
+    }
+
+    @Test
+    public void testBulkSave(){
+        List<Student> students = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            Student student = new Student();
+            student.name = "bulk " + i;
+            student.age = i % 30;
+            student.teacherId = 1;
+            students.add(student);
+        }
+        int count = DBHelper.with(mContext).bulkSave(Student.class, students);
+        assertTrue(count == students.size());
+
+        Student last = students.get(students.size() - 1);
+        Student saved = DBHelper.with(mContext).withTable(Student.class).applySearchById(last.id);
+        assertTrue(saved != null && last.name.equals(saved.name));
+    }
+
+    @Test
+    public void testSaveAllAndBulkSaveKeepColumnValues() {
+        // fields of Student are not declared alphabetically, reflection on ART returns them sorted
+        DBUtils dbUtils = DBHelper.with(mContext);
+        List<Student> saved = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            saved.add(newStudent("save all " + i, 40 + i, 100 + i));
+        }
+        assertTrue(dbUtils.saveAll(saved) == saved.size());
+
+        List<Student> bulkSaved = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            bulkSaved.add(newStudent("bulk save " + i, 50 + i, 200 + i));
+        }
+        assertTrue(dbUtils.bulkSave(Student.class, bulkSaved) == bulkSaved.size());
+
+        List<Student> students = new ArrayList<>(saved);
+        students.addAll(bulkSaved);
+        for (Student student : students) {
+            Student read = dbUtils.withTable(Student.class).applySearchById(student.id);
+            assertTrue(read != null);
+            assertTrue(student.name.equals(read.name));
+            assertTrue(student.age.equals(read.age));
+            assertTrue(student.teacherId == read.teacherId);
+        }
+    }
+
+    private static Student newStudent(String name, int age, long teacherId) {
+        Student student = new Student();
+        student.name = name;
+        student.age = age;
+        student.teacherId = teacherId;
+        return student;
+    }
+
+    @Test
+    public void testUpsertAll(){
+        DBUtils dbUtils = DBHelper.with(mContext);
+        Student student = new Student();
+        student.name = "upsert";
+        student.age = 8;
+        student.teacherId = 1;
+        List<Student> students = new ArrayList<>();
+        students.add(student);
+        assertTrue(dbUtils.upsertAll(students) == 1);
+        assertTrue(student.id != Entity.NOT_SAVED);
+
+        long id = student.id;
+        student.name = "upsert updated";
+        assertTrue(dbUtils.upsertAll(students) == 1);
+        // the existing row is updated in place, its primary key is kept
+        assertTrue(student.id == id);
+        Student saved = dbUtils.withTable(Student.class).applySearchById(student.id);
+        assertTrue(saved != null && "upsert updated".equals(saved.name));
+    }
+
+    @Test
+    public void testUpsertOnUniqueColumn() {
+        String databaseName = "school_upsert.db";
+        BaseDBHelper helper = newEmptyHelper(databaseName);
+        DBUtils dbUtils = DBUtils.create(helper);
+        try {
+            Course algebra = newCourse("A1", "Algebra", 10);
+            Course biology = newCourse("B1", "Biology", 20);
+            List<Course> courses = new ArrayList<>();
+            courses.add(algebra);
+            courses.add(biology);
+            assertTrue(dbUtils.upsertAll(courses) == 2);
+            assertCourseSaved(dbUtils, algebra);
+            assertCourseSaved(dbUtils, biology);
+
+            // a saved record whose unique column is changed updates its own row
+            long algebraId = algebra.id;
+            algebra.code = "A2";
+            algebra.title = "Algebra II";
+            assertTrue(dbUtils.withTable(Course.class).applyUpsert(algebra) == 1);
+            assertTrue(algebra.id == algebraId);
+            assertCourseSaved(dbUtils, algebra);
+            assertTrue(dbUtils.withTable(Course.class).applyCount() == 2);
+
+            // a new record of an existing unique value updates that row and takes its id
+            Course biologyAgain = newCourse("B1", "Biology II", 30);
+            assertTrue(dbUtils.withTable(Course.class).applyUpsert(biologyAgain) == 1);
+            assertTrue(biologyAgain.id == biology.id);
+            assertCourseSaved(dbUtils, biologyAgain);
+            assertTrue(dbUtils.withTable(Course.class).applyCount() == 2);
+
+            // unique value of another row fails and rolls back
+            algebra.code = "B1";
+            assertTrue(dbUtils.withTable(Course.class).applyUpsert(algebra) == 0);
+            assertTrue(algebra.id == algebraId);
+            assertTrue("A2".equals(dbUtils.withTable(Course.class).applySearchById(algebraId).code));
+        } finally {
+            dbUtils.close();
+            helper.close();
+            mContext.deleteDatabase(databaseName);
+        }
+    }
+
+    private static Course newCourse(String code, String title, int hours) {
+        Course course = new Course();
+        course.code = code;
+        course.title = title;
+        course.hours = hours;
+        return course;
+    }
+
+    private static void assertCourseSaved(DBUtils dbUtils, Course course) {
+        Course saved = dbUtils.withTable(Course.class).applySearchById(course.id);
+        assertTrue(saved != null);
+        assertTrue(course.code.equals(saved.code));
+        assertTrue(course.title.equals(saved.title));
+        assertTrue(course.hours == saved.hours);
+    }
+
     @Test
     public void testCount() {
         int count = DBHelper.with(mContext)
@@ -117,6 +270,24 @@ public class DBTester {
         assertTrue(count > 0);
     }
 
+    @Test
+    public void testUpdateChangedColumnsOnly() {
+        DBUtils dbUtils = DBHelper.with(mContext);
+        Student student = dbUtils.withTable(Student.class).applySearchById(1);
+        assertTrue(student != null);
+        // changes are not tracked until asked
+        assertTrue(student.toChangedValues().size() > 1);
+        student.clearChanges();
+        assertTrue(student.toChangedValues().size() == 0);
+        assertTrue(dbUtils.withTable(Student.class).applyUpdate(student) == 0);
+
+        student.age = student.age + 1;
+        ContentValues values = student.toChangedValues();
+        assertTrue(values.size() == 1 && values.containsKey("age"));
+        assertTrue(dbUtils.withTable(Student.class).applyUpdate(student) == 1);
+        assertTrue(student.toChangedValues().size() == 0);
+    }
+
     @Test
     public void testDeleteById(){
         int count = DBHelper.with(mContext).withTable(Student.class).applyDeleteById(1);
@@ -171,6 +342,78 @@ public class DBTester {
         assertTrue(success);
     }
 
+    @Test
+    public void testSearchByIds() {
+        List<Student> students = DBHelper.with(mContext).withTable(Student.class).applySearchAsList();
+        long[] ids = new long[students.size() + 1];
+        for (int i = 0; i < students.size(); i++) {
+            ids[i] = students.get(i).id;
+        }
+        ids[students.size()] = Long.MAX_VALUE;
+
+        LongSparseArray<Student> result = DBHelper.with(mContext).withTable(Student.class).applySearchByIds(ids);
+        assertTrue(result.size() == students.size());
+        assertTrue(result.get(Long.MAX_VALUE) == null);
+
+        boolean exists = DBHelper.with(mContext).withTable(Student.class)
+                .withWhere("_id=?", Long.MAX_VALUE)
+                .applyExists();
+        assertTrue(!exists);
+    }
+
+    @Test
+    public void testSearchByIdsInChunks() {
+        List<Student> students = DBHelper.with(mContext).withTable(Student.class).applySearchAsList();
+        assertTrue(students.size() > 0);
+        // more ids than one IN query can bind, with a full chunk and a remainder
+        long[] ids = new long[2 * SQLBuilder.MAX_BIND_ARGS + 5];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = i < students.size() ? students.get(i).id : Long.MAX_VALUE - i;
+        }
+
+        LongSparseArray<Student> result = DBHelper.with(mContext).withTable(Student.class)
+                .withColumns("name")
+                .applySearchByIds(ids);
+        assertTrue(result.size() == students.size());
+        for (Student student : students) {
+            Student found = result.get(student.id);
+            assertTrue(found != null && found.id == student.id);
+            assertTrue(found.name == null ? student.name == null : found.name.equals(student.name));
+        }
+    }
+
+    @Test
+    public void testSearchByIdsWithEntityCache() {
+        DBUtils dbUtils = DBHelper.with(mContext);
+        DBUtils.enableEntityCache(Student.class, 100);
+        try {
+            Student student = dbUtils.withTable(Student.class).applySearchFirst();
+            assertTrue(student != null);
+            long id = student.id;
+            assertTrue(dbUtils.withTable(Student.class).applySearchByIds(id).get(id) != null);
+            int hits = EntityCache.of(dbUtils.getDatabase(), Student.class).getHitCount();
+            assertTrue(dbUtils.withTable(Student.class).applySearchByIds(id).get(id) != null);
+            assertTrue(EntityCache.of(dbUtils.getDatabase(), Student.class).getHitCount() == hits + 1);
+
+            ContentValues values = new ContentValues();
+            values.put("name", "updated after cached");
+            assertTrue(dbUtils.withTable(Student.class).withWhere("_id=?", id).applyUpdate(values) == 1);
+            Student found = dbUtils.withTable(Student.class).applySearchByIds(id).get(id);
+            assertTrue(found != null && "updated after cached".equals(found.name));
+        } finally {
+            DBUtils.disableEntityCache(Student.class);
+        }
+    }
+
+    @Test
+    public void testExistsMatchesCount() {
+        DBUtils dbUtils = DBHelper.with(mContext);
+        boolean exists = dbUtils.withTable(Student.class).withWhere("age>?", 5).applyExists();
+        int count = dbUtils.withTable(Student.class).withWhere("age>?", 5).applyCount();
+        assertTrue(exists == (count > 0));
+        assertTrue(!dbUtils.withTable(Student.class).withWhere("age<?", 0).applyExists());
+    }
+
     @Test
     public void testCrossTableQuery(){
         List<Relation> list = DBHelper.with(mContext)
@@ -178,4 +421,258 @@ public class DBTester {
                 .applySearchAsList();
         System.out.println(list.size());
     }
+
+    @Test
+    public void testSessionReturnsSameInstance() {
+        DBUtils dbUtils = DBHelper.with(mContext);
+        Student first = dbUtils.withTable(Student.class).applySearchFirst();
+        assertTrue(first != null);
+
+        Session session = dbUtils.openSession();
+        Student student = session.findById(Student.class, first.id);
+        assertTrue(student != null && session.findById(Student.class, first.id) == student);
+        assertTrue(session.attach(first) == student);
+
+        // changes are tracked since it's loaded by session
+        student.age = student.age + 1;
+        assertTrue(student.toChangedValues().size() == 1);
+        assertTrue(session.update(student) == 1);
+        assertTrue(session.findById(Student.class, first.id) == student);
+
+        session.evict(Student.class, first.id);
+        Student reloaded = session.findById(Student.class, first.id);
+        assertTrue(reloaded != student && reloaded.age == student.age);
+    }
+
+    @Test
+    public void testWriteQueueCommitsFullBatchBeforeWindow() throws Exception {
+        DBUtils dbUtils = DBHelper.with(mContext);
+        // the window is never reached, batches are committed by the size cap
+        WriteQueue queue = new WriteQueue(dbUtils, TimeUnit.MINUTES.toMillis(10), 3);
+        try {
+            List<Student> students = new ArrayList<>();
+            List<Future<Long>> futures = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                Student student = new Student();
+                student.name = "queued " + i;
+                student.age = i;
+                student.teacherId = 1;
+                students.add(student);
+                futures.add(queue.submit(new WriteQueue.SaveTask<>(student)));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                long rowId = futures.get(i).get(5, TimeUnit.SECONDS);
+                assertTrue(rowId > 0 && students.get(i).id == rowId);
+            }
+        } finally {
+            queue.close();
+        }
+    }
+
+    @Test
+    public void testWriteQueueFlushCommitsQueuedWrites() throws Exception {
+        DBUtils dbUtils = DBHelper.with(mContext);
+        WriteQueue queue = new WriteQueue(dbUtils, TimeUnit.MINUTES.toMillis(10), 500);
+        try {
+            Student student = new Student();
+            student.name = "before flush";
+            student.age = 1;
+            student.teacherId = 1;
+            Future<Long> saved = queue.submit(new WriteQueue.SaveTask<>(student));
+            assertTrue(!saved.isDone());
+
+            // flush commits writes queued before it, in order
+            queue.flush();
+            assertTrue(saved.isDone() && saved.get() == student.id);
+            Student loaded = dbUtils.withTable(Student.class).applySearchById(student.id);
+            assertTrue(loaded != null && "before flush".equals(loaded.name));
+
+            student.name = "after flush";
+            Future<Integer> updated = queue.submit(new WriteQueue.UpdateTask<>(student));
+            Future<Integer> deleted = queue.submit(new WriteQueue.DeleteTask<>(student));
+            queue.flush();
+            assertTrue(updated.get() == 1 && deleted.get() == 1);
+            assertTrue(dbUtils.withTable(Student.class).applySearchById(student.id) == null);
+        } finally {
+            queue.close();
+        }
+    }
+
+    @Test
+    public void testWriteQueueCloseCommitsQueuedWrites() throws Exception {
+        DBUtils dbUtils = DBHelper.with(mContext);
+        WriteQueue queue = new WriteQueue(dbUtils, TimeUnit.MINUTES.toMillis(10), 500);
+        List<Future<Long>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Student student = new Student();
+            student.name = "before close " + i;
+            student.age = i;
+            student.teacherId = 1;
+            futures.add(queue.submit(new WriteQueue.SaveTask<>(student)));
+        }
+
+        // writes queued before close are committed before the writer stops
+        queue.close();
+        for (Future<Long> future : futures) {
+            assertTrue(future.isDone() && future.get() > 0);
+        }
+
+        boolean rejected = false;
+        try {
+            queue.submit(new WriteQueue.SaveTask<>(new Student()));
+        } catch (IllegalStateException e) {
+            rejected = true;
+        }
+        assertTrue(rejected);
+    }
+
+    @Test
+    public void testWriteQueueInvalidatesCachesAfterCommit() throws Exception {
+        DBUtils dbUtils = DBHelper.with(mContext);
+        DBUtils.enableResultCache(1024 * 1024, 1000);
+        WriteQueue queue = new WriteQueue(dbUtils, TimeUnit.MINUTES.toMillis(10), 500);
+        try {
+            Student student = dbUtils.withTable(Student.class).applySearchFirst();
+            assertTrue(student != null);
+            long id = student.id;
+            dbUtils.withTable(Student.class).withWhere("_id=?", id).applySearchAsList();
+
+            student.name = "updated by queue";
+            Future<Integer> updated = queue.submit(new WriteQueue.UpdateTask<>(student));
+            queue.flush();
+            assertTrue(updated.get() == 1);
+
+            List<Student> result = dbUtils.withTable(Student.class).withWhere("_id=?", id).applySearchAsList();
+            assertTrue(result.size() == 1 && "updated by queue".equals(result.get(0).name));
+        } finally {
+            queue.close();
+            DBUtils.disableResultCache();
+        }
+    }
+
+    @Test
+    public void testEntityCacheInvalidatedByUpdate() {
+        DBUtils dbUtils = DBHelper.with(mContext);
+        DBUtils.enableEntityCache(Student.class, 100);
+        try {
+            Student student = dbUtils.withTable(Student.class).applySearchFirst();
+            assertTrue(student != null);
+            long id = student.id;
+            assertTrue(dbUtils.withTable(Student.class).applySearchById(id) != null);
+
+            ContentValues values = new ContentValues();
+            values.put("name", "updated after cached");
+            assertTrue(dbUtils.withTable(Student.class).withWhere("_id=?", id).applyUpdate(values) == 1);
+            Student cached = dbUtils.withTable(Student.class).applySearchById(id);
+            assertTrue(cached != null && "updated after cached".equals(cached.name));
+        } finally {
+            DBUtils.disableEntityCache(Student.class);
+        }
+    }
+
+    @Test
+    public void testEntityCacheIsKeptPerDatabase() {
+        String otherName = "school_other.db";
+        BaseDBHelper otherHelper = newEmptyHelper(otherName);
+        DBUtils dbUtils = DBHelper.with(mContext);
+        DBUtils other = DBUtils.create(otherHelper);
+        DBUtils.enableEntityCache(Student.class, 100);
+        try {
+            Student student = dbUtils.withTable(Student.class).applySearchFirst();
+            assertTrue(student != null);
+            long id = student.id;
+
+            // the same id in another database
+            Student copy = new Student();
+            copy.id = id;
+            copy.name = "other database";
+            copy.age = student.age;
+            copy.teacherId = student.teacherId;
+            assertTrue(other.save(copy) == id);
+
+            Student cached = dbUtils.withTable(Student.class).applySearchById(id);
+            assertTrue(cached != null && !"other database".equals(cached.name));
+            Student otherCached = other.withTable(Student.class).applySearchById(id);
+            assertTrue(otherCached != null && "other database".equals(otherCached.name));
+
+            // write of another database doesn't touch cache of this one and vice versa
+            ContentValues values = new ContentValues();
+            values.put("name", "other updated");
+            assertTrue(other.withTable(Student.class).withWhere("_id=?", id).applyUpdate(values) == 1);
+            assertTrue(cached.name.equals(dbUtils.withTable(Student.class).applySearchById(id).name));
+            assertTrue("other updated".equals(other.withTable(Student.class).applySearchById(id).name));
+        } finally {
+            DBUtils.disableEntityCache(Student.class);
+            other.close();
+            otherHelper.close();
+            mContext.deleteDatabase(otherName);
+        }
+    }
+
+    @Test
+    public void testResultCacheInvalidatedByWrite() {
+        DBUtils dbUtils = DBHelper.with(mContext);
+        DBUtils.enableResultCache(1024 * 1024, 1000);
+        try {
+            Student student = dbUtils.withTable(Student.class).applySearchFirst();
+            assertTrue(student != null);
+            long id = student.id;
+            dbUtils.withTable(Student.class).withWhere("_id=?", id).applySearchAsList();
+            int hits = ResultCache.getInstance().getHitCount();
+            dbUtils.withTable(Student.class).withWhere("_id=?", id).applySearchAsList();
+            assertTrue(ResultCache.getInstance().getHitCount() == hits + 1);
+
+            ContentValues values = new ContentValues();
+            values.put("name", "updated after cached");
+            assertTrue(dbUtils.withTable(Student.class).withWhere("_id=?", id).applyUpdate(values) == 1);
+            List<Student> result = dbUtils.withTable(Student.class).withWhere("_id=?", id).applySearchAsList();
+            assertTrue(result.size() == 1 && "updated after cached".equals(result.get(0).name));
+        } finally {
+            DBUtils.disableResultCache();
+        }
+    }
+
+    @Test
+    public void testResultCacheIsKeptPerDatabase() {
+        String otherName = "school_other.db";
+        BaseDBHelper otherHelper = newEmptyHelper(otherName);
+        DBUtils dbUtils = DBHelper.with(mContext);
+        DBUtils other = DBUtils.create(otherHelper);
+        DBUtils.enableResultCache(1024 * 1024, 1000);
+        try {
+            assertTrue(dbUtils.withTable(Student.class).applySearchAsList().size() > 0);
+            // the same query of another database is not answered by cache of this one
+            assertTrue(other.withTable(Student.class).applySearchAsList().isEmpty());
+
+            Student student = new Student();
+            student.name = "other database";
+            assertTrue(other.save(student) > 0);
+            assertTrue(other.withTable(Student.class).applySearchAsList().size() == 1);
+
+            // write of another database doesn't drop results of this one
+            int hits = ResultCache.getInstance().getHitCount();
+            assertTrue(dbUtils.withTable(Student.class).applySearchAsList().size() > 0);
+            assertTrue(ResultCache.getInstance().getHitCount() == hits + 1);
+        } finally {
+            DBUtils.disableResultCache();
+            other.close();
+            otherHelper.close();
+            mContext.deleteDatabase(otherName);
+        }
+    }
+
+    /**
+     * @return helper of a new database with the tables of {@link DBHelper} and {@link Course}
+     */
+    private BaseDBHelper newEmptyHelper(String databaseName) {
+        mContext.deleteDatabase(databaseName);
+        return new BaseDBHelper(mContext, databaseName, 1) {
+            @Override
+            protected void onClassLoad(List<Class<? extends Entity>> tableClasses) {
+                tableClasses.add(Student.class);
+                tableClasses.add(Teacher.class);
+                tableClasses.add(Course.class);
+            }
+        };
+    }
 }
@@ -0,0 +1,22 @@
+package com.feiyan.lightdao.tables;
+
+import com.feiyan.lightdao.Entity;
+import com.feiyan.lightdao.annotation.Column;
+import com.feiyan.lightdao.annotation.Table;
+
+/**
+ * Table with a unique column, which is the conflict target of upsert. Its fields are not declared
+ * in alphabetical order.
+ */
+@Table("course")
+public class Course extends Entity {
+
+    @Column(name = "title", notnull = true)
+    public String title;
+
+    @Column(name = "code", unique = true)
+    public String code;
+
+    @Column(name = "hours")
+    public int hours;
+}
@@ -3,12 +3,14 @@ package com.feiyan.lightdao.tables;
 import com.feiyan.lightdao.Entity;
 import com.feiyan.lightdao.annotation.Column;
 import com.feiyan.lightdao.annotation.Foreign;
+import com.feiyan.lightdao.annotation.Index;
 import com.feiyan.lightdao.annotation.Table;
 
 /**
  * Created by zhangfei on 2017/4/29.
  */
 @Table("student")
+@Index({"teacher_id", "age DESC"})
 public class Student extends Entity {
 
     @Foreign(Teacher.class)
@@ -4,7 +4,9 @@ import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Process;
 import android.text.TextUtils;
+import android.util.Log;
 
 import com.feiyan.lightdao.annotation.Column;
 import com.feiyan.lightdao.annotation.Table;
@@ -12,6 +14,7 @@ import com.feiyan.lightdao.annotation.Table;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * An enhanced SQLiteOpenHelper, it can auto create tables with table class,
@@ -26,8 +29,44 @@ public abstract class BaseDBHelper extends SQLiteOpenHelper {
     protected abstract void onClassLoad(List<Class<? extends Entity>> tableClasses);
 
     protected BaseDBHelper(Context context, String databaseName, int version) {
+        this(context, databaseName, version, false);
+    }
+
+    /**
+     * @param prewarmMetadata build metadata of all table classes on a background thread,
+     *                        so that the first query on each table doesn't scan annotations.
+     *                        The library has no executor, a daemon thread is started for it, and
+     *                        it's not bound to this helper: it keeps running after the helper is
+     *                        closed, until metadata of all classes is built
+     */
+    protected BaseDBHelper(Context context, String databaseName, int version, boolean prewarmMetadata) {
         super(context, databaseName, null, version);
         onClassLoad(mTableClasses);
+
+        if (prewarmMetadata) {
+            prewarmMetadata();
+        }
+    }
+
+    /**
+     * Metadata is cached globally, so the thread only holds the table classes, not this helper.
+     */
+    private void prewarmMetadata() {
+        final List<Class<? extends Entity>> tableClasses = new ArrayList<>(mTableClasses);
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                try {
+                    ReflectTools.prewarm(tableClasses);
+                } catch (RuntimeException e) {
+                    // table class error will be thrown again at its first use
+                    Log.e(DBUtils.TAG, "prewarmMetadata() error: " + DBUtils.getTraceInfo(e));
+                }
+            }
+        }, "light-dao-prewarm");
+        thread.setDaemon(true);
+        thread.start();
     }
 
     @Override
@@ -39,8 +78,11 @@ public abstract class BaseDBHelper extends SQLiteOpenHelper {
                 continue;
             }
 
-            // create table
+            // create table and its indexes
             db.execSQL(SQLBuilder.buildCreateSQL(clazz).getSql());
+            for (SQL sql : SQLBuilder.buildCreateIndexSQL(clazz).values()) {
+                db.execSQL(sql.getSql());
+            }
         }
     }
 
@@ -71,9 +113,33 @@ public abstract class BaseDBHelper extends SQLiteOpenHelper {
             } else {
                 db.execSQL(SQLBuilder.buildCreateSQL(clazz).getSql());
             }
+            migrateIndexes(db, clazz, tableName);
         }
     }
 
+    /**
+     * Make indexes of table the same as declared: index not declared is dropped, index whose
+     * definition is changed is created again and new index is created.
+     */
+    private void migrateIndexes(SQLiteDatabase db, Class<? extends Entity> clazz, String tableName) {
+        Map<String, SQL> declared = SQLBuilder.buildCreateIndexSQL(clazz);
+        Map<String, String> existing = ReflectTools.getIndexes(db, tableName, SQLBuilder.getIndexPrefix(tableName));
+        for (Map.Entry<String, String> entry : existing.entrySet()) {
+            SQL sql = declared.get(entry.getKey());
+            if (sql == null || !normalize(sql.getSql()).equals(normalize(entry.getValue()))) {
+                db.execSQL("DROP INDEX " + entry.getKey());
+            }
+        }
 
+        for (Map.Entry<String, SQL> entry : declared.entrySet()) {
+            String sql = existing.get(entry.getKey());
+            if (sql == null || !normalize(entry.getValue().getSql()).equals(normalize(sql))) {
+                db.execSQL(entry.getValue().getSql());
+            }
+        }
+    }
 
+    private static String normalize(String sql) {
+        return sql.trim().replaceAll("\\s+", " ");
+    }
 }
@@ -3,61 +3,104 @@ package com.feiyan.lightdao;
 import android.content.ContentValues;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * A container to contain more than one CRUD jobs, and should be executed by
- * {@link DBUtils#applyBatchJobs(BatchJobs)}.
+ * {@link DBUtils#applyBatchJobs(BatchJobs)}. Every job is a parameterized SQL template
+ * with its bind arguments, so jobs of the same kind share one compiled statement.
  * 
  * @author zhangfei
  * 
  */
 public final class BatchJobs {
 	private final ArrayList<SQL> batchJobs;
+	private final Set<Class<? extends Entity>> tableClasses;
 
 	public BatchJobs() {
 		this.batchJobs = new ArrayList<>();
+		this.tableClasses = new HashSet<>();
 	}
 
 	public <T extends Entity> void addInsertJob(T table) {
-		batchJobs.add(SQLBuilder.buildInsertSQL(table));
+		tableClasses.add(table.getClass());
+		addJob(SQLBuilder.buildInsertSQL(table));
 	}
 
 	public <T extends Entity> void addInsertJob(List<T> tables) {
 		for (T table : tables) {
-			batchJobs.add(SQLBuilder.buildInsertSQL(table));
+			tableClasses.add(table.getClass());
+			addJob(SQLBuilder.buildInsertSQL(table));
 		}
 	}
 
+	/**
+	 * Add multi-row insert jobs for records of one table class, see {@link SQLBuilder#buildBulkInsertSQL(Class, List)}
+	 */
+	public <T extends Entity> void addBulkInsertJob(Class<T> tableClass, List<T> tables) {
+		tableClasses.add(tableClass);
+		batchJobs.addAll(SQLBuilder.buildBulkInsertSQL(tableClass, tables));
+	}
+
 	public <T extends Entity> void addUpdateJob(Class<T> tableClass, long id, ContentValues values) {
+		tableClasses.add(tableClass);
 		batchJobs.add(SQLBuilder.buildUpdateSQL(tableClass, id, values));
 	}
 
+	/**
+	 * Add update job of changed columns only, see {@link Entity#toChangedValues()}, no job is added
+	 * if nothing changed.
+	 */
 	public <T extends Entity> void addUpdateJob(Class<T> tableClass, T table) {
-		batchJobs.add(SQLBuilder.buildUpdateSQL(tableClass, table.toContentValues(), Entity._ID + "=?", table.id));
+		ContentValues values = table.toChangedValues();
+		if (values.size() > 0) {
+			tableClasses.add(tableClass);
+			batchJobs.add(SQLBuilder.buildUpdateSQL(tableClass, values, Entity._ID + "=?", table.id));
+		}
 	}
 
 	public <T extends Entity> void addUpdateJob(Class<T> tableClass, ContentValues values, String where, Object... whereArgs) {
+		tableClasses.add(tableClass);
 		batchJobs.add(SQLBuilder.buildUpdateSQL(tableClass, values, where, whereArgs));
 	}
 
 	public <T extends Entity> void addDeleteJob(T table) {
+		tableClasses.add(table.getClass());
 		batchJobs.add(SQLBuilder.buildDeleteSQL(table));
 	}
 
 	public <T extends Entity> void addDeleteJob(Class<T> tableClass) {
+		tableClasses.add(tableClass);
 		batchJobs.add(SQLBuilder.buildDeleteSQL(tableClass));
 	}
 
 	public <T extends Entity> void addDeleteJob(Class<T> tableClass, long id) {
+		tableClasses.add(tableClass);
 		batchJobs.add(SQLBuilder.buildDeleteSQL(tableClass, id));
 	}
 
 	public <T extends Entity> void addDeleteJob(Class<T> tableClass, String where, Object... whereArgs) {
+		tableClasses.add(tableClass);
 		batchJobs.add(SQLBuilder.buildDeleteSQL(tableClass, where, whereArgs));
 	}
 
+	private void addJob(SQL sql) {
+		// record without any column has nothing to insert
+		if (sql != null) {
+			batchJobs.add(sql);
+		}
+	}
+
 	public ArrayList<SQL> getBatchJobs() {
 		return batchJobs;
 	}
+
+	/**
+	 * @return classes of tables changed by jobs
+	 */
+	public Set<Class<? extends Entity>> getTableClasses() {
+		return tableClasses;
+	}
 }
\ No newline at end of file
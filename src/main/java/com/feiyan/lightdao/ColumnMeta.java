@@ -0,0 +1,103 @@
+package com.feiyan.lightdao;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteProgram;
+
+import com.feiyan.lightdao.annotation.ID;
+
+import java.lang.reflect.Field;
+
+/**
+ * Immutable column definition of a table or query class, it's resolved once from
+ * field and {@link com.feiyan.lightdao.annotation.Column} annotation.
+ *
+ * @author zhangfei
+ */
+public final class ColumnMeta {
+    private final Field field;
+    private final String name;
+    private final String aliasName;
+    private final String dataType;
+    private final boolean id;
+    private final boolean notNull;
+    private final boolean unique;
+    private final String defVal;
+    private final FieldAccessor accessor;
+
+    ColumnMeta(Field field) {
+        ColumnInfo info = ReflectTools.readColumnInfo(field);
+        field.setAccessible(true);
+        this.field = field;
+        this.name = info.getName();
+        this.aliasName = info.getAliasName();
+        this.dataType = ReflectTools.getDataTypeByField(field);
+        this.id = field.isAnnotationPresent(ID.class);
+        this.notNull = info.isNotNull();
+        this.unique = info.isUnique();
+        this.defVal = info.getDefVal();
+        this.accessor = FieldAccessor.of(field);
+    }
+
+    public Field getField() {
+        return field;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getAliasName() {
+        return aliasName;
+    }
+
+    /**
+     * @return SQLite data type: INTEGER, REAL, TEXT or BLOB
+     */
+    public String getDataType() {
+        return dataType;
+    }
+
+    public boolean isId() {
+        return id;
+    }
+
+    public boolean isNotNull() {
+        return notNull;
+    }
+
+    public boolean isUnique() {
+        return unique;
+    }
+
+    public String getDefVal() {
+        return defVal;
+    }
+
+    /**
+     * Read field value of object.
+     */
+    public Object getValue(Object source) {
+        return accessor.get(source);
+    }
+
+    /**
+     * Set value into field of target object.
+     */
+    void setValue(Object target, Object value) {
+        accessor.setValue(target, value);
+    }
+
+    /**
+     * Read cursor value at index into field of target object.
+     */
+    void read(Object target, Cursor cursor, int columnIndex) {
+        accessor.read(target, cursor, columnIndex);
+    }
+
+    /**
+     * Bind field value of source object to program at index.
+     */
+    void bind(SQLiteProgram program, int index, Object source) {
+        accessor.bindValue(program, index, source);
+    }
+}
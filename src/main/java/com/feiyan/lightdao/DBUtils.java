@@ -3,6 +3,7 @@ package com.feiyan.lightdao;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteStatement;
 import android.util.Log;
 
 import com.feiyan.lightdao.conditionbuilder.ConditionBuilder;
@@ -11,8 +12,10 @@ import com.feiyan.lightdao.conditionbuilder.MultiTableConditionBuilder;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.io.Writer;
-import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
 
 /**
  * A convenient tool to do CRUD jobs on SQLite database.
@@ -21,8 +24,11 @@ import java.util.List;
  */
 public final class DBUtils {
     public static final String TAG = "DBUtils";
+    // path of in-memory database
+    private static final String MEMORY_DB_PATH = ":memory:";
     private SQLiteDatabase database;
     private final BaseDBHelper dbHelper;
+    private WriteQueue writeQueue;
 
     /**
      * Create or retrieve SQLLite utils instance.
@@ -48,9 +54,19 @@ public final class DBUtils {
     }
 
     /**
-     * Close database, should called after db operations are completed.
+     * Close database, should called after db operations are completed. Writes queued by
+     * async methods are committed before database is closed.
      */
     public void close() {
+        WriteQueue queue;
+        synchronized (this) {
+            queue = writeQueue;
+            writeQueue = null;
+        }
+        if (queue != null) {
+            queue.close();
+        }
+
         if (database != null) {
             database.close();
             database = null;
@@ -65,6 +81,73 @@ public final class DBUtils {
         return new MultiTableConditionBuilder<T>(getDatabase()).withQuery(queryClass);
     }
 
+    /**
+     * Enable entity cache of table class as {@link com.feiyan.lightdao.annotation.Cacheable} does,
+     * see {@link EntityCache}.
+     *
+     * @param maxSize max count of records kept in cache
+     */
+    public static void enableEntityCache(Class<? extends Entity> tableClass, int maxSize) {
+        EntityCache.enable(tableClass, maxSize);
+    }
+
+    /**
+     * Disable entity cache of table class, even if it's annotated with
+     * {@link com.feiyan.lightdao.annotation.Cacheable}.
+     */
+    public static void disableEntityCache(Class<? extends Entity> tableClass) {
+        EntityCache.disable(tableClass);
+    }
+
+    /**
+     * Enable result cache of list queries, see {@link ResultCache}.
+     *
+     * @param maxBytes max estimated bytes of all cached results
+     * @param maxRows  max count of rows of a result to be cached
+     */
+    public static void enableResultCache(int maxBytes, int maxRows) {
+        ResultCache.enable(maxBytes, maxRows);
+    }
+
+    /**
+     * Disable result cache of list queries and drop all cached results.
+     */
+    public static void disableResultCache() {
+        ResultCache.disable();
+    }
+
+    /**
+     * Enable diagnostics of query plan, every new query of applySearch is checked once and
+     * full table scan or temporary B-tree in its plan is reported to listener, see
+     * {@link QueryPlanWatchdog}. It costs one more query for every new sql text, so it's
+     * meant for debug builds.
+     */
+    public static void enableQueryPlanCheck(QueryPlanWatchdog.Listener listener) {
+        QueryPlanWatchdog.enable(listener);
+    }
+
+    /**
+     * Disable diagnostics of query plan.
+     */
+    public static void disableQueryPlanCheck() {
+        QueryPlanWatchdog.disable();
+    }
+
+    /**
+     * Open a unit of work whose lookups by id return the same instance for the same record,
+     * see {@link Session}.
+     */
+    public Session openSession() {
+        return new Session(this);
+    }
+
+    /**
+     * Import CSV or NDJSON data into table as a stream, see {@link DataImporter}.
+     */
+    public <T extends Entity> DataImporter<T> withImport(Class<T> tableClass) {
+        return new DataImporter<>(getDatabase(), tableClass);
+    }
+
     /**
      * Insert table with one record.
      *
@@ -73,57 +156,217 @@ public final class DBUtils {
      */
     public <T extends Entity> long save(T table) {
         String tableName = ReflectTools.getTableName(table.getClass());
+        SQLiteDatabase db = getDatabase();
         try {
-            return getDatabase().insert(tableName, null, table.toContentValues());
+            return db.insert(tableName, null, table.toContentValues());
         } catch (SQLiteException e){
             Log.e(TAG, "save(T) error: " + getTraceInfo(e));
             return 0;
+        } finally {
+            ResultCache.invalidate(db, tableName);
+        }
+    }
+
+    /**
+     * Start the asynchronous write queue used by {@link #saveAsync(Entity)},
+     * {@link #updateAsync(Entity)} and {@link #deleteAsync(Entity)}: writes are gathered for
+     * a short window or up to a size cap and committed in one transaction by a single writer
+     * thread. The queue is started with default options by the first async write if this is
+     * not called.
+     *
+     * @param windowMillis how long the writer waits for more writes after the first one
+     * @param maxBatchSize max count of writes committed in one transaction
+     */
+    public synchronized void enableWriteQueue(long windowMillis, int maxBatchSize) {
+        if (writeQueue != null) {
+            throw new IllegalStateException("write queue is already started");
+        }
+        writeQueue = new WriteQueue(this, windowMillis, maxBatchSize);
+    }
+
+    private synchronized WriteQueue getWriteQueue() {
+        if (writeQueue == null) {
+            writeQueue = new WriteQueue(this, WriteQueue.DEFAULT_WINDOW_MILLIS, WriteQueue.DEFAULT_MAX_BATCH_SIZE);
+        }
+        return writeQueue;
+    }
+
+    /**
+     * Insert record through the write queue, generated row id is written back into record
+     * when it's committed.
+     *
+     * @return future of row id, completed after the transaction is committed
+     */
+    public <T extends Entity> Future<Long> saveAsync(T table) {
+        return getWriteQueue().submit(new WriteQueue.SaveTask<>(table));
+    }
+
+    /**
+     * Update changed columns of record through the write queue, see
+     * {@link ConditionBuilder#applyUpdate(Entity)}.
+     *
+     * @return future of updated count, completed after the transaction is committed
+     */
+    public <T extends Entity> Future<Integer> updateAsync(T table) {
+        return getWriteQueue().submit(new WriteQueue.UpdateTask<>(table));
+    }
+
+    /**
+     * Delete record through the write queue.
+     *
+     * @return future of deleted count, completed after the transaction is committed
+     */
+    public <T extends Entity> Future<Integer> deleteAsync(T table) {
+        return getWriteQueue().submit(new WriteQueue.DeleteTask<>(table));
+    }
+
+    /**
+     * Block until all writes queued by async methods are committed.
+     */
+    public void flushWriteQueue() {
+        WriteQueue queue;
+        synchronized (this) {
+            queue = writeQueue;
+        }
+        if (queue != null) {
+            queue.flush();
         }
     }
 
     /**
-     * Insert table with more than one records.
+     * Insert table with more than one records, one compiled statement is used for every
+     * table class and generated row ids are written back into records.
      *
      * @param tables records to save into database.
      * @return saved count
      */
+    @SuppressWarnings("unchecked")
     public <T extends Entity> int saveAll(List<T> tables) {
         SQLiteDatabase db = getDatabase();
+        Map<Class<?>, InsertStatement<T>> statements = new HashMap<>();
+        long[] originalIds = new long[tables.size()];
+        int index = 0;
         try {
             db.beginTransaction();
             for (T table : tables) {
-                SQL sql = SQLBuilder.buildInsertSQL(table);
-                if (sql != null) {
-                    db.execSQL(sql.getSql(), sql.getBindArgsAsArray());
+                InsertStatement<T> statement = statements.get(table.getClass());
+                if (statement == null) {
+                    statement = new InsertStatement<>(db, (Class<T>) table.getClass());
+                    statements.put(table.getClass(), statement);
                 }
+
+                originalIds[index++] = table.id;
+                statement.insert(table);
             }
             db.setTransactionSuccessful();
             return tables.size();
         } catch (SQLiteException e) {
             Log.e(TAG, "saveAll() error: " + getTraceInfo(e));
+
+            // transaction is rolled back, so are the written back ids
+            for (int i = 0; i < index; i++) {
+                tables.get(i).id = originalIds[i];
+            }
             return 0;
         } finally {
+            for (InsertStatement<T> statement : statements.values()) {
+                statement.close();
+            }
             db.endTransaction();
+            for (Class<?> tableClass : statements.keySet()) {
+                ResultCache.invalidate(db, tableClass.asSubclass(Entity.class));
+            }
         }
     }
 
     /**
-     * Execute more than one SQL job with transaction.
+     * Insert records of one table class with multi-row INSERT statements, every statement
+     * inserts as many records as SQLite bind argument limit allows, which needs much less
+     * statement executions than {@link #saveAll(List)}.
+     *
+     * @param tableClass class of all records
+     * @param tables     records to save into database.
+     * @return saved count
+     */
+    public <T extends Entity> int bulkSave(Class<T> tableClass, List<T> tables) {
+        SQLiteDatabase db = getDatabase();
+        int rowsPerStatement = SQLBuilder.getInsertRowsPerStatement(tableClass);
+        InsertStatement<T> fullStatement = null;
+        InsertStatement<T> remainderStatement = null;
+        long[] originalIds = new long[tables.size()];
+        for (int i = 0; i < originalIds.length; i++) {
+            originalIds[i] = tables.get(i).id;
+        }
+
+        try {
+            db.beginTransaction();
+            int start = 0;
+            int size = tables.size();
+            if (size >= rowsPerStatement) {
+                fullStatement = new InsertStatement<>(db, tableClass, rowsPerStatement);
+                for (; start + rowsPerStatement <= size; start += rowsPerStatement) {
+                    fullStatement.insert(tables, start);
+                }
+            }
+
+            if (start < size) {
+                remainderStatement = new InsertStatement<>(db, tableClass, size - start);
+                remainderStatement.insert(tables, start);
+            }
+            db.setTransactionSuccessful();
+            return size;
+        } catch (SQLiteException e) {
+            Log.e(TAG, "bulkSave() error: " + getTraceInfo(e));
+
+            // transaction is rolled back, so are the written back ids
+            for (int i = 0; i < originalIds.length; i++) {
+                tables.get(i).id = originalIds[i];
+            }
+            return 0;
+        } finally {
+            if (fullStatement != null) {
+                fullStatement.close();
+            }
+            if (remainderStatement != null) {
+                remainderStatement.close();
+            }
+            db.endTransaction();
+            ResultCache.invalidate(db, tableClass);
+        }
+    }
+
+    /**
+     * Insert or update records of one table class in one transaction, see
+     * {@link ConditionBuilder#applyUpsert(List)}.
+     *
+     * @param tables records to insert or update, all of the same class
+     * @return count of inserted or updated records
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends Entity> int upsertAll(List<T> tables) {
+        if (tables == null || tables.isEmpty()) {
+            return 0;
+        }
+
+        Class<T> tableClass = (Class<T>) tables.get(0).getClass();
+        return withTable(tableClass).applyUpsert(tables);
+    }
+
+    /**
+     * Execute more than one SQL job with transaction, jobs are executed in order and jobs with
+     * the same SQL template share one compiled statement.
      *
      * @param batchJobs @see {@link BatchJobs}
      */
     public boolean applyBatchJobs(BatchJobs batchJobs) {
         SQLiteDatabase database = getDatabase();
+        StatementCache statements = new StatementCache(database);
         try {
             database.beginTransaction();
-            ArrayList<SQL> bindArgs = batchJobs.getBatchJobs();
-            for (SQL job : bindArgs) {
-                Object[] args = job.getBindArgsAsArray();
-                if (args != null && args.length > 0) {
-                    database.execSQL(job.getSql(), args);
-                } else {
-                    database.execSQL(job.getSql());
-                }
+            for (SQL job : batchJobs.getBatchJobs()) {
+                SQLiteStatement statement = statements.get(job.getSql());
+                job.bindTo(statement);
+                statement.execute();
             }
             database.setTransactionSuccessful();
             return true;
@@ -131,8 +374,25 @@ public final class DBUtils {
             Log.e(TAG, "applyBatchJobs() error: " + getTraceInfo(e));
             return false;
         } finally {
+            statements.close();
             database.endTransaction();
+            for (Class<? extends Entity> tableClass : batchJobs.getTableClasses()) {
+                EntityCache.invalidate(database, tableClass);
+                ResultCache.invalidate(database, tableClass);
+            }
+        }
+    }
+
+    /**
+     * @return key of database used by {@link EntityCache} and {@link ResultCache}, its path, or
+     * its identity if it's an in-memory database
+     */
+    static String getDatabaseKey(SQLiteDatabase database) {
+        String path = database.getPath();
+        if (path == null || MEMORY_DB_PATH.equals(path)) {
+            return MEMORY_DB_PATH + "@" + Integer.toHexString(System.identityHashCode(database));
         }
+        return path;
     }
 
     public static String getTraceInfo(Throwable e) {
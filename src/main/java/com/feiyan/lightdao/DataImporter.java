@@ -0,0 +1,377 @@
+package com.feiyan.lightdao;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Base64;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming import of CSV or NDJSON data into a table, records are read one at a time and
+ * bound straight onto the compiled INSERT statement of table class, and committed in chunks,
+ * so that memory used doesn't grow with the size of data. Get it by
+ * {@link DBUtils#withImport(Class)}.
+ * <p>
+ * Values are matched to columns by column name: the header line of CSV or the keys of every
+ * JSON object. {@link Entity#_ID} is always generated, missing or empty value is inserted as
+ * the default value of its data type and BLOB value is expected in Base64.
+ *
+ * @author zhangfei
+ */
+public final class DataImporter<T extends Entity> {
+    public static final int DEFAULT_CHUNK_SIZE = 1000;
+
+    private final SQLiteDatabase database;
+    private final Class<T> tableClass;
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+    private ProgressListener listener;
+
+    /**
+     * Notified after every chunk is committed.
+     */
+    public interface ProgressListener {
+        /**
+         * @param importedCount count of records committed so far
+         */
+        void onProgress(long importedCount);
+    }
+
+    DataImporter(SQLiteDatabase database, Class<T> tableClass) {
+        this.database = database;
+        this.tableClass = tableClass;
+    }
+
+    /**
+     * @param chunkSize count of records committed in one transaction
+     */
+    public DataImporter<T> withChunkSize(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunk size must be positive");
+        }
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    public DataImporter<T> withProgressListener(ProgressListener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    /**
+     * Import CSV data (RFC 4180) whose first line is the header of column names.
+     *
+     * @return count of imported records, records of a failed chunk are not counted
+     */
+    public long applyCsv(Reader reader) throws IOException {
+        return apply(new CsvRecordReader(reader, getImportColumns()));
+    }
+
+    /**
+     * Import NDJSON data, one JSON object per line, blank lines are skipped.
+     *
+     * @return count of imported records, records of a failed chunk are not counted
+     */
+    public long applyNdjson(Reader reader) throws IOException {
+        return apply(new JsonRecordReader(reader, getImportColumns()));
+    }
+
+    /**
+     * @return names of all columns except _id, in the order of INSERT statement
+     */
+    private List<String> getImportColumns() {
+        EntityMeta<T> meta = ReflectTools.getEntityMeta(tableClass);
+        List<String> columnNames = new ArrayList<>();
+        for (int i = 0; i < meta.getColumnCount(); i++) {
+            if (!meta.getColumn(i).isId()) {
+                columnNames.add(meta.getColumn(i).getName());
+            }
+        }
+        return columnNames;
+    }
+
+    private long apply(RecordReader records) throws IOException {
+        EntityMeta<T> meta = ReflectTools.getEntityMeta(tableClass);
+        List<ColumnMeta> columns = new ArrayList<>();
+        for (int i = 0; i < meta.getColumnCount(); i++) {
+            if (!meta.getColumn(i).isId()) {
+                columns.add(meta.getColumn(i));
+            }
+        }
+
+        long importedCount = 0;
+        int chunkCount = 0;
+        SQLiteStatement statement = null;
+        try {
+            statement = database.compileStatement(SQLBuilder.buildInsertSQL(tableClass).getSql());
+            database.beginTransaction();
+            while (records.next()) {
+                statement.clearBindings();
+                for (int i = 0; i < columns.size(); i++) {
+                    bindValue(statement, i + 1, columns.get(i), records.get(i));
+                }
+                statement.executeInsert();
+
+                if (++chunkCount == chunkSize) {
+                    database.setTransactionSuccessful();
+                    database.endTransaction();
+                    importedCount += chunkCount;
+                    chunkCount = 0;
+                    notifyProgress(importedCount);
+                    database.beginTransaction();
+                }
+            }
+            database.setTransactionSuccessful();
+        } catch (SQLiteException e) {
+            Log.e(DBUtils.TAG, "import error: " + DBUtils.getTraceInfo(e));
+            chunkCount = 0;
+        } finally {
+            if (database.inTransaction()) {
+                database.endTransaction();
+            }
+            if (statement != null) {
+                statement.close();
+            }
+            ResultCache.invalidate(database, tableClass);
+        }
+
+        if (chunkCount > 0) {
+            importedCount += chunkCount;
+            notifyProgress(importedCount);
+        }
+        return importedCount;
+    }
+
+    private void notifyProgress(long importedCount) {
+        if (listener != null) {
+            listener.onProgress(importedCount);
+        }
+    }
+
+    /**
+     * Bind value read from data with the type of column, null or empty value is bound as the
+     * default value of the type.
+     */
+    private static void bindValue(SQLiteStatement statement, int index, ColumnMeta column, Object value) {
+        String dataType = column.getDataType();
+        boolean empty = value == null || (value instanceof String && ((String) value).length() == 0);
+        try {
+            switch (dataType) {
+                case ReflectTools.DataType.INTEGER:
+                    if (empty) {
+                        statement.bindLong(index, 0);
+                    } else if (value instanceof Number) {
+                        statement.bindLong(index, ((Number) value).longValue());
+                    } else if (value instanceof Boolean) {
+                        statement.bindLong(index, (Boolean) value ? 1 : 0);
+                    } else {
+                        String text = value.toString().trim();
+                        if ("true".equalsIgnoreCase(text) || "false".equalsIgnoreCase(text)) {
+                            statement.bindLong(index, Boolean.parseBoolean(text) ? 1 : 0);
+                        } else {
+                            statement.bindLong(index, Long.parseLong(text));
+                        }
+                    }
+                    break;
+                case ReflectTools.DataType.REAL:
+                    if (empty) {
+                        statement.bindDouble(index, 0);
+                    } else if (value instanceof Number) {
+                        statement.bindDouble(index, ((Number) value).doubleValue());
+                    } else {
+                        statement.bindDouble(index, Double.parseDouble(value.toString().trim()));
+                    }
+                    break;
+                case ReflectTools.DataType.BLOB:
+                    statement.bindBlob(index, empty ? new byte[0] : Base64.decode(value.toString(), Base64.DEFAULT));
+                    break;
+                default:
+                    statement.bindString(index, value == null ? "" : value.toString());
+                    break;
+            }
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException or bad Base64
+            throw new SQLiteException("Value [" + value + "] cannot be converted for column ["
+                    + column.getName() + "]: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reads records one by one, values of current record are returned by column index, columns are
+     * given at creation and resolved against the data once.
+     */
+    interface RecordReader {
+        /**
+         * Move to next record.
+         *
+         * @return false at the end of data
+         */
+        boolean next() throws IOException;
+
+        /**
+         * @param columnIndex index of column in the columns given at creation
+         * @return value of column in current record, null if not exist
+         */
+        Object get(int columnIndex);
+    }
+
+    /**
+     * Reads CSV records char by char, quoted value may contain separators, escaped quotes ("")
+     * and line breaks. The first record is the header, position of every column is resolved from
+     * it at the first {@link #next()}. Blank lines and a byte order mark before the header are
+     * skipped.
+     */
+    static final class CsvRecordReader implements RecordReader {
+        private static final char BOM = '\uFEFF';
+
+        private final BufferedReader reader;
+        private final List<String> columnNames;
+        private final StringBuilder value = new StringBuilder();
+        private final List<String> record = new ArrayList<>();
+        // position of every column in record, -1 if it's not in header
+        private int[] positions;
+        // whether current record has any value, even an empty quoted one
+        private boolean started;
+        private boolean ended;
+
+        CsvRecordReader(Reader reader, List<String> columnNames) {
+            this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+            this.columnNames = columnNames;
+        }
+
+        @Override
+        public boolean next() throws IOException {
+            if (positions == null) {
+                List<String> header = readRecord();
+                if (header == null) {
+                    return false;
+                }
+
+                positions = new int[columnNames.size()];
+                for (int i = 0; i < positions.length; i++) {
+                    positions[i] = header.indexOf(columnNames.get(i));
+                }
+            }
+            return readRecord() != null;
+        }
+
+        @Override
+        public Object get(int columnIndex) {
+            int position = positions[columnIndex];
+            return position >= 0 && position < record.size() ? record.get(position) : null;
+        }
+
+        /**
+         * Read next record without resolving columns.
+         *
+         * @return values of the record, null at the end of data
+         */
+        List<String> readRecord() throws IOException {
+            record.clear();
+            started = false;
+            while (!ended) {
+                int c = reader.read();
+                if (c == -1) {
+                    ended = true;
+                    break;
+                }
+                if (c == BOM && positions == null && !started) {
+                    continue;
+                }
+                if (c == '\r') {
+                    continue;
+                }
+                if (c == '\n') {
+                    // skip blank lines
+                    if (!started) {
+                        continue;
+                    }
+                    break;
+                }
+
+                started = true;
+                if (c == ',') {
+                    endValue();
+                } else if (c == '"' && value.length() == 0) {
+                    readQuoted();
+                } else {
+                    value.append((char) c);
+                }
+            }
+
+            if (!started) {
+                return null;
+            }
+            endValue();
+            return record;
+        }
+
+        private void readQuoted() throws IOException {
+            while (true) {
+                int c = reader.read();
+                if (c == -1) {
+                    throw new IOException("Unterminated quoted value in CSV");
+                }
+                if (c == '"') {
+                    reader.mark(1);
+                    if (reader.read() != '"') {
+                        reader.reset();
+                        return;
+                    }
+                }
+                value.append((char) c);
+            }
+        }
+
+        private void endValue() {
+            record.add(value.toString());
+            value.setLength(0);
+        }
+    }
+
+    /**
+     * Reads one JSON object per line, values are looked up by column name.
+     */
+    static final class JsonRecordReader implements RecordReader {
+        private final BufferedReader reader;
+        private final List<String> columnNames;
+        private JSONObject record;
+
+        JsonRecordReader(Reader reader, List<String> columnNames) {
+            this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+            this.columnNames = columnNames;
+        }
+
+        @Override
+        public boolean next() throws IOException {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().length() == 0) {
+                    continue;
+                }
+                try {
+                    record = new JSONObject(line);
+                    return true;
+                } catch (JSONException e) {
+                    throw new IOException("Invalid JSON line: " + e.getMessage());
+                }
+            }
+            record = null;
+            return false;
+        }
+
+        @Override
+        public Object get(int columnIndex) {
+            Object value = record.opt(columnNames.get(columnIndex));
+            return value == JSONObject.NULL ? null : value;
+        }
+    }
+}
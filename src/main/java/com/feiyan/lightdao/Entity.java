@@ -1,5 +1,7 @@
 package com.feiyan.lightdao;
 
+import android.content.ContentValues;
+
 import com.feiyan.lightdao.annotation.Column;
 import com.feiyan.lightdao.annotation.ID;
 
@@ -21,6 +23,47 @@ public class Entity extends Query implements Serializable {
     @Column(name = _ID)
     public long id = NOT_SAVED;
 
+    // column values since when changes are tracked, null if they are not tracked
+    transient Object[] loadedValues;
+
+    /**
+     * Write columns changed since changes are tracked into a ContentValues container, all columns
+     * are written if they are not tracked. Empty result means nothing changed.
+     * <p>
+     * Tracking is opt-in so that reading rows doesn't copy their values: it starts at
+     * {@link #clearChanges()}, after the record is written by
+     * {@link com.feiyan.lightdao.conditionbuilder.ConditionBuilder#applyUpdate(Entity)}, or when
+     * it's put into a {@link Session}. Records of partial columns are tracked since they are read.
+     */
+    @SuppressWarnings("unchecked")
+    public ContentValues toChangedValues() {
+        if (loadedValues == null) {
+            return toContentValues();
+        }
+
+        EntityMeta<Entity> meta = (EntityMeta<Entity>) ReflectTools.getEntityMeta(getClass());
+        return meta.toChangedValues(this, loadedValues);
+    }
+
+    /**
+     * Start tracking changes from current values, it should be called after record was loaded
+     * from or written into database, so that next update only touches columns changed after it.
+     */
+    @SuppressWarnings("unchecked")
+    public void clearChanges() {
+        EntityMeta<Entity> meta = (EntityMeta<Entity>) ReflectTools.getEntityMeta(getClass());
+        loadedValues = meta.snapshot(this, null);
+    }
+
+    /**
+     * Start tracking changes if they are not tracked yet.
+     */
+    void trackChanges() {
+        if (loadedValues == null) {
+            clearChanges();
+        }
+    }
+
     // All classes share this
     public static final String _ID = "_id";
     public static final String[] COUNT_COLUMNS = new String[]{"count(*)"};
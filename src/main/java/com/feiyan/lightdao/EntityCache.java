@@ -0,0 +1,188 @@
+package com.feiyan.lightdao;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.util.LruCache;
+
+import com.feiyan.lightdao.annotation.Cacheable;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Size bounded LRU cache of records of one table in one database keyed by id, it's consulted by
+ * {@link com.feiyan.lightdao.conditionbuilder.ConditionBuilder#applySearchById(long)}. It's
+ * enabled by {@link Cacheable} on table class or {@link DBUtils#enableEntityCache(Class, int)}, for
+ * every database opened by this library: each database has its own caches, keyed by its path.
+ * <p>
+ * Column values are cached instead of objects and every lookup creates a new object, so that
+ * changing a returned object never changes the cache. Every write path invalidates the records
+ * it changes, and a record loaded before an invalidation is not put into cache after it.
+ *
+ * @author zhangfei
+ */
+public final class EntityCache {
+    // marks class whose cache is not enabled
+    private static final EntityCache NONE = new EntityCache(1);
+    // max size set by enableEntityCache or disableEntityCache, it overrides Cacheable
+    private static final ConcurrentMap<Class<?>, Integer> maxSizes = new ConcurrentHashMap<>();
+    // caches of every database keyed by DBUtils.getDatabaseKey, then by table class
+    private static final ConcurrentMap<String, ConcurrentMap<Class<?>, EntityCache>> caches = new ConcurrentHashMap<>();
+
+    private final LruCache<Long, Object[]> cache;
+    private long version;
+
+    private EntityCache(int maxSize) {
+        this.cache = new LruCache<>(maxSize);
+    }
+
+    /**
+     * @return cache of table class in database, null if it's not enabled
+     */
+    public static EntityCache of(SQLiteDatabase database, Class<? extends Entity> tableClass) {
+        return of(DBUtils.getDatabaseKey(database), tableClass);
+    }
+
+    static EntityCache of(String databaseKey, Class<? extends Entity> tableClass) {
+        ConcurrentMap<Class<?>, EntityCache> databaseCaches = getCaches(databaseKey);
+        EntityCache cache = databaseCaches.get(tableClass);
+        if (cache == null) {
+            Integer maxSize = maxSizes.get(tableClass);
+            int size = maxSize != null ? maxSize : ReflectTools.getEntityMeta(tableClass).getCacheSize();
+            EntityCache created = size > 0 ? new EntityCache(size) : NONE;
+            cache = databaseCaches.putIfAbsent(tableClass, created);
+            if (cache == null) {
+                cache = created;
+            }
+        }
+        return cache != NONE ? cache : null;
+    }
+
+    private static ConcurrentMap<Class<?>, EntityCache> getCaches(String databaseKey) {
+        ConcurrentMap<Class<?>, EntityCache> databaseCaches = caches.get(databaseKey);
+        if (databaseCaches == null) {
+            ConcurrentMap<Class<?>, EntityCache> created = new ConcurrentHashMap<>();
+            databaseCaches = caches.putIfAbsent(databaseKey, created);
+            if (databaseCaches == null) {
+                databaseCaches = created;
+            }
+        }
+        return databaseCaches;
+    }
+
+    static void enable(Class<? extends Entity> tableClass, int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("max size of cache must be positive");
+        }
+        maxSizes.put(tableClass, maxSize);
+        dropCaches(tableClass);
+    }
+
+    static void disable(Class<? extends Entity> tableClass) {
+        maxSizes.put(tableClass, 0);
+        dropCaches(tableClass);
+    }
+
+    // caches of every database are created again with the new size by of()
+    private static void dropCaches(Class<? extends Entity> tableClass) {
+        for (ConcurrentMap<Class<?>, EntityCache> databaseCaches : caches.values()) {
+            databaseCaches.remove(tableClass);
+        }
+    }
+
+    /**
+     * Invalidate all records of table class in database if its cache is enabled.
+     */
+    public static void invalidate(SQLiteDatabase database, Class<? extends Entity> tableClass) {
+        invalidate(DBUtils.getDatabaseKey(database), tableClass);
+    }
+
+    static void invalidate(String databaseKey, Class<? extends Entity> tableClass) {
+        EntityCache cache = getCaches(databaseKey).get(tableClass);
+        if (cache != null && cache != NONE) {
+            cache.invalidateAll();
+        }
+    }
+
+    /**
+     * Invalidate records of ids of table class in database if its cache is enabled.
+     */
+    public static void invalidate(SQLiteDatabase database, Class<? extends Entity> tableClass, long... ids) {
+        invalidate(DBUtils.getDatabaseKey(database), tableClass, ids);
+    }
+
+    static void invalidate(String databaseKey, Class<? extends Entity> tableClass, long... ids) {
+        EntityCache cache = getCaches(databaseKey).get(tableClass);
+        if (cache != null && cache != NONE) {
+            cache.invalidateIds(ids);
+        }
+    }
+
+    /**
+     * @return new object of cached record, null if not cached
+     */
+    public <T extends Entity> T get(Class<T> tableClass, long id) {
+        Object[] values = cache.get(id);
+        if (values == null) {
+            return null;
+        }
+
+        // blob is copied so that changing it in place never changes the cache
+        Object[] copy = values.clone();
+        for (int i = 0; i < copy.length; i++) {
+            if (copy[i] instanceof byte[]) {
+                copy[i] = ((byte[]) copy[i]).clone();
+            }
+        }
+
+        EntityMeta<T> meta = ReflectTools.getEntityMeta(tableClass);
+        T table = meta.newInstance();
+        meta.setValues(table, copy);
+        return table;
+    }
+
+    /**
+     * @return version which should be passed to {@link #put(Entity, long)} for record loaded after it
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * Put record loaded from database, it's ignored if cache was invalidated after version.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized <T extends Entity> void put(T table, long version) {
+        if (this.version == version && table.id != Entity.NOT_SAVED) {
+            EntityMeta<T> meta = (EntityMeta<T>) ReflectTools.getEntityMeta(table.getClass());
+            cache.put(table.id, meta.snapshot(table, null));
+        }
+    }
+
+    public synchronized void invalidateIds(long... ids) {
+        version++;
+        for (long id : ids) {
+            cache.remove(id);
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        version++;
+        cache.evictAll();
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    public int getHitCount() {
+        return cache.hitCount();
+    }
+
+    public int getMissCount() {
+        return cache.missCount();
+    }
+
+    public int getEvictionCount() {
+        return cache.evictionCount();
+    }
+}
@@ -0,0 +1,336 @@
+package com.feiyan.lightdao;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteProgram;
+import android.util.Log;
+
+import com.feiyan.lightdao.annotation.Cacheable;
+import com.feiyan.lightdao.annotation.Column;
+import com.feiyan.lightdao.annotation.OrderBy;
+import com.feiyan.lightdao.annotation.Table;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable metadata of a table or query class: table name, default order and columns are
+ * resolved once and shared by all queries of the class, get it by
+ * {@link ReflectTools#getEntityMeta(Class)}.
+ *
+ * @author zhangfei
+ */
+public final class EntityMeta<T extends Query> {
+    // snapshot value of column which was not read from database
+    private static final Object NOT_LOADED = new Object();
+
+    private final Class<T> clazz;
+    private final String tableName;
+    private final String defaultOrderBy;
+    private final int cacheSize;
+    private final ColumnMeta[] columns;
+    private final String[] columnNames;
+    private final RowMapper<T> rowMapper;
+
+    EntityMeta(Class<T> clazz) {
+        this.clazz = clazz;
+
+        Table table = clazz.getAnnotation(Table.class);
+        this.tableName = table != null ? table.value() : null;
+
+        OrderBy orderBy = clazz.getAnnotation(OrderBy.class);
+        this.defaultOrderBy = orderBy != null ? orderBy.value() : null;
+
+        Cacheable cacheable = clazz.getAnnotation(Cacheable.class);
+        this.cacheSize = cacheable != null ? cacheable.maxSize() : 0;
+
+        List<ColumnMeta> columnList = new ArrayList<>();
+        for (Field field : ReflectTools.getClassFields(clazz)) {
+            if (field.isAnnotationPresent(Column.class)) {
+                columnList.add(ReflectTools.getColumnMeta(field));
+            }
+        }
+
+        // order of reflected fields is not defined (ART sorts them by name), so columns are
+        // arranged in the order of generated mapper, which every value array is indexed by
+        RowMapper<T> mapper = ReflectTools.loadRowMapper(clazz);
+        ColumnMeta[] mapperColumns = mapper != null ? orderByMapper(columnList, mapper.getColumnNames()) : null;
+        if (mapper != null && mapperColumns == null) {
+            Log.e(DBUtils.TAG, "columns of [" + mapper.getClass().getName() + "] don't match ["
+                    + clazz.getName() + "], it may be stale, reflection is used instead");
+            mapper = null;
+        }
+        this.rowMapper = mapper;
+        this.columns = mapperColumns != null
+                ? mapperColumns
+                : columnList.toArray(new ColumnMeta[columnList.size()]);
+        this.columnNames = new String[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            columnNames[i] = columns[i].getName();
+        }
+    }
+
+    /**
+     * @return columns in the order of names of mapper, null if they are not the same columns
+     */
+    static ColumnMeta[] orderByMapper(List<ColumnMeta> columnList, String[] mapperNames) {
+        if (mapperNames.length != columnList.size()) {
+            return null;
+        }
+
+        Map<String, ColumnMeta> columnsByName = new HashMap<>();
+        for (ColumnMeta column : columnList) {
+            columnsByName.put(column.getName(), column);
+        }
+        ColumnMeta[] ordered = new ColumnMeta[mapperNames.length];
+        for (int i = 0; i < mapperNames.length; i++) {
+            ordered[i] = columnsByName.remove(mapperNames[i]);
+            if (ordered[i] == null) {
+                return null;
+            }
+        }
+        return ordered;
+    }
+
+    public Class<T> getEntityClass() {
+        return clazz;
+    }
+
+    /**
+     * @return table name or null if class is not annotated with {@link Table}
+     */
+    public String getTableName() {
+        return tableName;
+    }
+
+    public String getDefaultOrderBy() {
+        return defaultOrderBy;
+    }
+
+    /**
+     * @return max size of entity cache defined by {@link Cacheable}, 0 if not defined
+     */
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    /**
+     * @return columns in the same order as {@link RowMapper#getColumnNames()} when there is a
+     * generated mapper, every value array and index array of this class follows this order
+     */
+    public ColumnMeta[] getColumns() {
+        return columns.clone();
+    }
+
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    public ColumnMeta getColumn(int index) {
+        return columns[index];
+    }
+
+    /**
+     * @return generated row mapper or null if there is none
+     */
+    public RowMapper<T> getRowMapper() {
+        return rowMapper;
+    }
+
+    public T newInstance() {
+        if (rowMapper != null) {
+            return rowMapper.newInstance();
+        }
+
+        try {
+            return clazz.newInstance();
+        } catch (IllegalAccessException e) {
+            throw new SQLiteException("IllegalAccessException: " + e.getMessage());
+        } catch (InstantiationException e) {
+            throw new SQLiteException("InstantiationException: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Bind column values of source object to program.
+     *
+     * @param bindIndexes bind position (starts from 1) of every column, zero or negative
+     *                    position means the column should be skipped
+     */
+    public void bind(T source, SQLiteProgram program, int[] bindIndexes) {
+        if (rowMapper != null) {
+            rowMapper.bind(source, program, bindIndexes);
+            return;
+        }
+
+        for (int i = 0; i < columns.length; i++) {
+            if (bindIndexes[i] > 0) {
+                columns[i].bind(program, bindIndexes[i], source);
+            }
+        }
+    }
+
+    /**
+     * Read column values of source object, in the same order as {@link #getColumns()}.
+     */
+    public Object[] getValues(T source) {
+        Object[] values = new Object[columns.length];
+        if (rowMapper != null) {
+            rowMapper.getValues(source, values);
+        } else {
+            for (int i = 0; i < columns.length; i++) {
+                values[i] = columns[i].getValue(source);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Set column values into target object, values are in the same order as {@link #getColumns()}.
+     */
+    void setValues(T target, Object[] values) {
+        if (rowMapper != null) {
+            rowMapper.setValues(target, values);
+        } else {
+            for (int i = 0; i < columns.length; i++) {
+                columns[i].setValue(target, values[i]);
+            }
+        }
+    }
+
+    /**
+     * Take column values of source object as loaded values, blob is copied so that changing
+     * it in place can be found later.
+     *
+     * @param columnIndexes cursor column index of every column, negative index means the column
+     *                      was not loaded, null means all columns were loaded
+     */
+    Object[] snapshot(T source, int[] columnIndexes) {
+        Object[] values = getValues(source);
+        for (int i = 0; i < values.length; i++) {
+            if (columnIndexes != null && columnIndexes[i] < 0) {
+                values[i] = NOT_LOADED;
+            } else if (values[i] instanceof byte[]) {
+                values[i] = ((byte[]) values[i]).clone();
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Put columns whose value is different from snapshot into ContentValues, column changed to null
+     * is put as null, column not loaded is put only when it's not null. Id column is never put.
+     */
+    ContentValues toChangedValues(T source, Object[] snapshot) {
+        ContentValues values = new ContentValues();
+        Object[] current = getValues(source);
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i].isId()) {
+                continue;
+            }
+
+            Object value = current[i];
+            Object loaded = snapshot[i];
+            boolean changed;
+            if (loaded == NOT_LOADED) {
+                changed = value != null;
+            } else if (value instanceof byte[] && loaded instanceof byte[]) {
+                changed = !Arrays.equals((byte[]) value, (byte[]) loaded);
+            } else {
+                changed = value != null ? !value.equals(loaded) : loaded != null;
+            }
+
+            if (changed) {
+                if (value == null) {
+                    values.putNull(columns[i].getName());
+                } else {
+                    Query.putValue(values, columns[i].getName(), value);
+                }
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Resolve column indexes of cursor once, the result can be used to read every row of it.
+     *
+     * @param queryColumns columns used in query, null means all columns
+     */
+    public BindingPlan<T> newBindingPlan(Cursor cursor, String[] queryColumns) {
+        Set<String> columnSet = null;
+        if (queryColumns != null && queryColumns.length > 0) {
+            columnSet = new HashSet<>(Arrays.asList(queryColumns));
+        }
+
+        int[] indexes = new int[columnNames.length];
+        for (int i = 0; i < columnNames.length; i++) {
+            if (columnSet == null || columnSet.contains(columnNames[i])) {
+                indexes[i] = cursor.getColumnIndex(columnNames[i]);
+            } else {
+                indexes[i] = -1;
+            }
+        }
+        return new BindingPlan<>(this, indexes);
+    }
+
+    /**
+     * Cursor column indexes of every column in a query result, resolved once per cursor.
+     */
+    public static final class BindingPlan<T extends Query> {
+        private final EntityMeta<T> meta;
+        private final int[] columnIndexes;
+
+        // whether some columns are not read, see restore()
+        private final boolean partial;
+
+        BindingPlan(EntityMeta<T> meta, int[] columnIndexes) {
+            this.meta = meta;
+            this.columnIndexes = columnIndexes;
+
+            boolean partial = false;
+            for (int index : columnIndexes) {
+                partial |= index < 0;
+            }
+            this.partial = partial && Entity.class.isAssignableFrom(meta.clazz);
+        }
+
+        /**
+         * Create object and read current row of cursor into it.
+         */
+        public T read(Cursor cursor) {
+            T target = meta.newInstance();
+            restore(target, cursor);
+            return target;
+        }
+
+        /**
+         * Read current row of cursor into target object.
+         */
+        public void restore(T target, Cursor cursor) {
+            if (meta.rowMapper != null) {
+                meta.rowMapper.restore(target, cursor, columnIndexes);
+            } else {
+                ColumnMeta[] columns = meta.columns;
+                for (int i = 0; i < columns.length; i++) {
+                    int index = columnIndexes[i];
+                    if (index >= 0) {
+                        columns[i].read(target, cursor, index);
+                    }
+                }
+            }
+
+            // change tracking is opt-in, see Entity#clearChanges(), but a record of partial
+            // columns is always tracked so that updating it never writes unread columns back
+            if (partial) {
+                ((Entity) target).loadedValues = meta.snapshot(target, columnIndexes);
+            }
+        }
+    }
+}
@@ -0,0 +1,345 @@
+package com.feiyan.lightdao;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteProgram;
+
+import java.lang.reflect.Field;
+
+/**
+ * Reads cursor value into field and binds field value to statement with the typed getter and
+ * setter of its data type, it's chosen once per column so that no type dispatch and no boxing
+ * of primitive fields happens per cell.
+ *
+ * @author zhangfei
+ */
+abstract class FieldAccessor {
+    final Field field;
+
+    FieldAccessor(Field field) {
+        this.field = field;
+    }
+
+    static FieldAccessor of(Field field) {
+        Class<?> type = field.getType();
+        if (type == int.class) {
+            return new IntAccessor(field);
+        } else if (type == long.class) {
+            return new LongAccessor(field);
+        } else if (type == short.class) {
+            return new ShortAccessor(field);
+        } else if (type == double.class) {
+            return new DoubleAccessor(field);
+        } else if (type == float.class) {
+            return new FloatAccessor(field);
+        } else if (type == boolean.class) {
+            return new BooleanAccessor(field);
+        } else if (type == String.class) {
+            return new StringAccessor(field);
+        } else if (type == byte[].class || type == Byte[].class) {
+            return new BlobAccessor(field);
+        } else if (type == Integer.class) {
+            return new IntegerObjectAccessor(field);
+        } else if (type == Long.class) {
+            return new LongObjectAccessor(field);
+        } else if (type == Short.class) {
+            return new ShortObjectAccessor(field);
+        } else if (type == Double.class) {
+            return new DoubleObjectAccessor(field);
+        } else if (type == Float.class) {
+            return new FloatObjectAccessor(field);
+        } else if (type == Boolean.class) {
+            return new BooleanObjectAccessor(field);
+        } else {
+            throw new SQLiteException("Field [" + field.getName() + "] is not supported.");
+        }
+    }
+
+    /**
+     * Read cursor value at index into field of target object.
+     */
+    final void read(Object target, Cursor cursor, int columnIndex) {
+        try {
+            set(target, cursor, columnIndex);
+        } catch (IllegalAccessException e) {
+            throw new SQLiteException("IllegalAccessException:" + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            throw new SQLiteException("Cursor value cannot be converted to field's value for field ["
+                    + field.getName() + "]");
+        }
+    }
+
+    final Object get(Object source) {
+        try {
+            return field.get(source);
+        } catch (IllegalAccessException e) {
+            throw new SQLiteException("IllegalAccessException: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            throw new SQLiteException("IllegalArgumentException: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Set value into field of target object, primitive field is unboxed from its wrapper.
+     */
+    final void setValue(Object target, Object value) {
+        try {
+            field.set(target, value);
+        } catch (IllegalAccessException e) {
+            throw new SQLiteException("IllegalAccessException: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            throw new SQLiteException("IllegalArgumentException: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Bind field value of source object to program at index, null value is bound as
+     * the default value of data type.
+     */
+    final void bindValue(SQLiteProgram program, int index, Object source) {
+        try {
+            bind(program, index, source);
+        } catch (IllegalAccessException e) {
+            throw new SQLiteException("IllegalAccessException: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            throw new SQLiteException("IllegalArgumentException: " + e.getMessage());
+        }
+    }
+
+    abstract void set(Object target, Cursor cursor, int columnIndex) throws IllegalAccessException;
+
+    abstract void bind(SQLiteProgram program, int index, Object source) throws IllegalAccessException;
+
+    private static final class IntAccessor extends FieldAccessor {
+        IntAccessor(Field field) {
+            super(field);
+        }
+
+        @Override
+        void set(Object target, Cursor cursor, int columnIndex) throws IllegalAccessException {
+            field.setInt(target, cursor.getInt(columnIndex));
+        }
+
+        @Override
+        void bind(SQLiteProgram program, int index, Object source) throws IllegalAccessException {
+            program.bindLong(index, field.getInt(source));
+        }
+    }
+
+    private static final class LongAccessor extends FieldAccessor {
+        LongAccessor(Field field) {
+            super(field);
+        }
+
+        @Override
+        void set(Object target, Cursor cursor, int columnIndex) throws IllegalAccessException {
+            field.setLong(target, cursor.getLong(columnIndex));
+        }
+
+        @Override
+        void bind(SQLiteProgram program, int index, Object source) throws IllegalAccessException {
+            program.bindLong(index, field.getLong(source));
+        }
+    }
+
+    private static final class ShortAccessor extends FieldAccessor {
+        ShortAccessor(Field field) {
+            super(field);
+        }
+
+        @Override
+        void set(Object target, Cursor cursor, int columnIndex) throws IllegalAccessException {
+            field.setShort(target, cursor.getShort(columnIndex));
+        }
+
+        @Override
+        void bind(SQLiteProgram program, int index, Object source) throws IllegalAccessException {
+            program.bindLong(index, field.getShort(source));
+        }
+    }
+
+    private static final class DoubleAccessor extends FieldAccessor {
+        DoubleAccessor(Field field) {
+            super(field);
+        }
+
+        @Override
+        void set(Object target, Cursor cursor, int columnIndex) throws IllegalAccessException {
+            field.setDouble(target, cursor.getDouble(columnIndex));
+        }
+
+        @Override
+        void bind(SQLiteProgram program, int index, Object source) throws IllegalAccessException {
+            program.bindDouble(index, field.getDouble(source));
+        }
+    }
+
+    private static final class FloatAccessor extends FieldAccessor {
+        FloatAccessor(Field field) {
+            super(field);
+        }
+
+        @Override
+        void set(Object target, Cursor cursor, int columnIndex) throws IllegalAccessException {
+            field.setFloat(target, cursor.getFloat(columnIndex));
+        }
+
+        @Override
+        void bind(SQLiteProgram program, int index, Object source) throws IllegalAccessException {
+            program.bindDouble(index, field.getFloat(source));
+        }
+    }
+
+    private static final class BooleanAccessor extends FieldAccessor {
+        BooleanAccessor(Field field) {
+            super(field);
+        }
+
+        @Override
+        void set(Object target, Cursor cursor, int columnIndex) throws IllegalAccessException {
+            field.setBoolean(target, cursor.getInt(columnIndex) == 1);
+        }
+
+        @Override
+        void bind(SQLiteProgram program, int index, Object source) throws IllegalAccessException {
+            program.bindLong(index, field.getBoolean(source) ? 1 : 0);
+        }
+    }
+
+    private static final class StringAccessor extends FieldAccessor {
+        StringAccessor(Field field) {
+            super(field);
+        }
+
+        @Override
+        void set(Object target, Cursor cursor, int columnIndex) throws IllegalAccessException {
+            field.set(target, cursor.getString(columnIndex));
+        }
+
+        @Override
+        void bind(SQLiteProgram program, int index, Object source) throws IllegalAccessException {
+            String value = (String) field.get(source);
+            program.bindString(index, value != null ? value : "");
+        }
+    }
+
+    private static final class BlobAccessor extends FieldAccessor {
+        BlobAccessor(Field field) {
+            super(field);
+        }
+
+        @Override
+        void set(Object target, Cursor cursor, int columnIndex) throws IllegalAccessException {
+            field.set(target, cursor.getBlob(columnIndex));
+        }
+
+        @Override
+        void bind(SQLiteProgram program, int index, Object source) throws IllegalAccessException {
+            Object value = field.get(source);
+            program.bindBlob(index, value instanceof byte[] ? (byte[]) value : new byte[0]);
+        }
+    }
+
+    // boxed types hold objects anyway, they are set with Field.set()
+    private static final class IntegerObjectAccessor extends FieldAccessor {
+        IntegerObjectAccessor(Field field) {
+            super(field);
+        }
+
+        @Override
+        void set(Object target, Cursor cursor, int columnIndex) throws IllegalAccessException {
+            field.set(target, Integer.valueOf(cursor.getInt(columnIndex)));
+        }
+
+        @Override
+        void bind(SQLiteProgram program, int index, Object source) throws IllegalAccessException {
+            Integer value = (Integer) field.get(source);
+            program.bindLong(index, value != null ? value : 0);
+        }
+    }
+
+    private static final class LongObjectAccessor extends FieldAccessor {
+        LongObjectAccessor(Field field) {
+            super(field);
+        }
+
+        @Override
+        void set(Object target, Cursor cursor, int columnIndex) throws IllegalAccessException {
+            field.set(target, Long.valueOf(cursor.getLong(columnIndex)));
+        }
+
+        @Override
+        void bind(SQLiteProgram program, int index, Object source) throws IllegalAccessException {
+            Long value = (Long) field.get(source);
+            program.bindLong(index, value != null ? value : 0L);
+        }
+    }
+
+    private static final class ShortObjectAccessor extends FieldAccessor {
+        ShortObjectAccessor(Field field) {
+            super(field);
+        }
+
+        @Override
+        void set(Object target, Cursor cursor, int columnIndex) throws IllegalAccessException {
+            field.set(target, Short.valueOf(cursor.getShort(columnIndex)));
+        }
+
+        @Override
+        void bind(SQLiteProgram program, int index, Object source) throws IllegalAccessException {
+            Short value = (Short) field.get(source);
+            program.bindLong(index, value != null ? value : 0);
+        }
+    }
+
+    private static final class DoubleObjectAccessor extends FieldAccessor {
+        DoubleObjectAccessor(Field field) {
+            super(field);
+        }
+
+        @Override
+        void set(Object target, Cursor cursor, int columnIndex) throws IllegalAccessException {
+            field.set(target, Double.valueOf(cursor.getDouble(columnIndex)));
+        }
+
+        @Override
+        void bind(SQLiteProgram program, int index, Object source) throws IllegalAccessException {
+            Double value = (Double) field.get(source);
+            program.bindDouble(index, value != null ? value : 0d);
+        }
+    }
+
+    private static final class FloatObjectAccessor extends FieldAccessor {
+        FloatObjectAccessor(Field field) {
+            super(field);
+        }
+
+        @Override
+        void set(Object target, Cursor cursor, int columnIndex) throws IllegalAccessException {
+            field.set(target, Float.valueOf(cursor.getFloat(columnIndex)));
+        }
+
+        @Override
+        void bind(SQLiteProgram program, int index, Object source) throws IllegalAccessException {
+            Float value = (Float) field.get(source);
+            program.bindDouble(index, value != null ? value : 0f);
+        }
+    }
+
+    private static final class BooleanObjectAccessor extends FieldAccessor {
+        BooleanObjectAccessor(Field field) {
+            super(field);
+        }
+
+        @Override
+        void set(Object target, Cursor cursor, int columnIndex) throws IllegalAccessException {
+            field.set(target, Boolean.valueOf(cursor.getInt(columnIndex) == 1));
+        }
+
+        @Override
+        void bind(SQLiteProgram program, int index, Object source) throws IllegalAccessException {
+            Boolean value = (Boolean) field.get(source);
+            program.bindLong(index, value != null && value ? 1 : 0);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.feiyan.lightdao;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.List;
+
+/**
+ * A compiled INSERT statement of table class, it's compiled once and executed for every
+ * record (or every chunk of records for multi-row insert) with typed values bound straight
+ * from the records.
+ *
+ * @author zhangfei
+ */
+final class InsertStatement<T extends Entity> {
+    private final SQLiteDatabase database;
+    private final EntityMeta<T> meta;
+    private final SQLiteStatement statement;
+    // count of rows changed by the last statement, only compiled for multi-row insert
+    private final SQLiteStatement changesStatement;
+    private final int rowCount;
+    private final int[][] bindIndexes;
+
+    InsertStatement(SQLiteDatabase database, Class<T> tableClass) {
+        this(database, tableClass, 1);
+    }
+
+    /**
+     * @param rowCount count of records inserted by one execution
+     */
+    InsertStatement(SQLiteDatabase database, Class<T> tableClass, int rowCount) {
+        this.database = database;
+        this.meta = ReflectTools.getEntityMeta(tableClass);
+        this.statement = database.compileStatement(SQLBuilder.buildInsertSQL(tableClass, rowCount).getSql());
+        this.changesStatement = rowCount > 1 ? database.compileStatement("SELECT changes()") : null;
+        this.rowCount = rowCount;
+
+        // bind all columns except _id, in the same order as insert sql
+        int columnCount = meta.getColumnCount();
+        this.bindIndexes = new int[rowCount][columnCount];
+        int position = 0;
+        for (int row = 0; row < rowCount; row++) {
+            for (int i = 0; i < columnCount; i++) {
+                bindIndexes[row][i] = Entity._ID.equals(meta.getColumn(i).getName()) ? 0 : ++position;
+            }
+        }
+    }
+
+    int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Insert record and write generated row id back into it.
+     *
+     * @return row id of inserted row
+     */
+    long insert(T table) {
+        statement.clearBindings();
+        meta.bind(table, statement, bindIndexes[0]);
+        long rowId = statement.executeInsert();
+        if (rowId != -1) {
+            table.id = rowId;
+        }
+        return rowId;
+    }
+
+    /**
+     * Insert {@link #getRowCount()} records from start with one execution and write generated
+     * row ids back into them.
+     * <p>
+     * Ids are computed back from the last row id, which is right only if rows of the statement
+     * got consecutive ids: the caller must hold a write transaction of the database on current
+     * thread, so that no other connection inserts in between, and every row must be inserted.
+     * Both are checked, {@link SQLiteException} is thrown if either doesn't hold and the caller
+     * should roll back.
+     *
+     * @return row id of last inserted row
+     */
+    long insert(List<T> tables, int start) {
+        if (rowCount == 1) {
+            return insert(tables.get(start));
+        }
+        if (!database.inTransaction() || !database.isDbLockedByCurrentThread()) {
+            throw new SQLiteException("multi-row insert must run in a write transaction of current thread");
+        }
+
+        statement.clearBindings();
+        for (int row = 0; row < rowCount; row++) {
+            meta.bind(tables.get(start + row), statement, bindIndexes[row]);
+        }
+
+        long lastRowId = statement.executeInsert();
+        if (lastRowId != -1) {
+            long changes = changesStatement.simpleQueryForLong();
+            if (changes != rowCount) {
+                throw new SQLiteException("multi-row insert changed " + changes + " rows, expected " + rowCount);
+            }
+
+            // rows of one INSERT statement get consecutive ids from AUTOINCREMENT
+            for (int row = 0; row < rowCount; row++) {
+                tables.get(start + row).id = lastRowId - (rowCount - 1 - row);
+            }
+        }
+        return lastRowId;
+    }
+
+    void close() {
+        statement.close();
+        if (changesStatement != null) {
+            changesStatement.close();
+        }
+    }
+}
@@ -2,17 +2,8 @@ package com.feiyan.lightdao;
 
 import android.content.ContentValues;
 import android.database.Cursor;
-import android.database.sqlite.SQLiteException;
-import android.text.TextUtils;
-
-import com.feiyan.lightdao.annotation.Column;
-import com.feiyan.lightdao.annotation.Table;
 
 import java.io.Serializable;
-import java.lang.reflect.Field;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.List;
 
 /**
  * Multi-table query result is list of java entity and the entity class must extend it.
@@ -25,110 +16,66 @@ public class Query implements Serializable {
     /**
      * Write the content into a ContentValues container
      */
+    @SuppressWarnings("unchecked")
     public ContentValues toContentValues() {
         ContentValues values = new ContentValues();
-        Field[] fields = ReflectTools.getClassFields(getClass());
-
-        for (Field field : fields) {
-            Column column = field.getAnnotation(Column.class);
-            if (column == null) {
-                continue;
-            }
+        EntityMeta<Query> meta = (EntityMeta<Query>) ReflectTools.getEntityMeta(getClass());
+        RowMapper<Query> mapper = meta.getRowMapper();
+        if (mapper != null) {
+            mapper.toContentValues(this, values);
+            return values;
+        }
 
-            String columnName = column.name();
-            if (TextUtils.isEmpty(columnName)) {
-                columnName = field.getName();
-            }
+        for (int i = 0; i < meta.getColumnCount(); i++) {
+            ColumnMeta column = meta.getColumn(i);
+            String columnName = column.getName();
+            Object value = column.getValue(this);
 
             // record which not saved into database yet, its id should not be put into content values,
             // since its id will be generated automatically by auto increment
-            try {
-                if (columnName.equals(Entity._ID) && field.getLong(this) == Entity.NOT_SAVED) {
-                    continue;
-                }
-            } catch (IllegalAccessException e) {
-                throw new SQLiteException("IllegalAccessException: " + e.getMessage());
-            } catch (IllegalArgumentException e) {
-                throw new SQLiteException("IllegalArgumentException: " + e.getMessage());
+            if (columnName.equals(Entity._ID) && value instanceof Long && (Long) value == Entity.NOT_SAVED) {
+                continue;
             }
 
-            try {
-                // put field value into ContentValues which is not null
-                Object value = field.get(this);
-                if (value != null) {
-                    if (value instanceof Boolean) {
-                        boolean boolVal = Boolean.valueOf(value.toString());
-                        values.put(columnName, boolVal ? 1 : 0);
-                    } else {
-                        values.put(columnName, value.toString());
-                    }
-                }
-            } catch (IllegalAccessException e) {
-                throw new SQLiteException("IllegalAccessException:" + e.getMessage());
-            } catch (IllegalArgumentException e) {
-                throw new SQLiteException("IllegalArgumentException:" + e.getMessage());
+            // put field value into ContentValues which is not null
+            if (value != null) {
+                putValue(values, columnName, value);
             }
         }
         return values;
     }
 
     /**
-     * Read the Content from a ContentCursor.
+     * Put value with its own type, so that SQLite stores it without converting from text.
      */
-    public void restore(Cursor cursor, String[] columns) {
-        List<String> columnList;
-        if (columns != null) {
-            columnList = Arrays.asList(columns);
+    static void putValue(ContentValues values, String key, Object value) {
+        if (value instanceof String) {
+            values.put(key, (String) value);
+        } else if (value instanceof Integer) {
+            values.put(key, (Integer) value);
+        } else if (value instanceof Long) {
+            values.put(key, (Long) value);
+        } else if (value instanceof Double) {
+            values.put(key, (Double) value);
+        } else if (value instanceof Float) {
+            values.put(key, (Float) value);
+        } else if (value instanceof Short) {
+            values.put(key, (Short) value);
+        } else if (value instanceof Boolean) {
+            values.put(key, (Boolean) value ? 1 : 0);
+        } else if (value instanceof byte[]) {
+            values.put(key, (byte[]) value);
         } else {
-            columnList = Collections.emptyList();
-        }
-
-        Field[] fields = ReflectTools.getClassFields(getClass());
-        for (Field field : fields) {
-            Column column = field.getAnnotation(Column.class);
-            if (column == null) {
-                continue;
-            }
-
-            String columnName = !TextUtils.isEmpty(column.name()) ? column.name() : field.getName();
-
-            // set field value
-            if (columnList.isEmpty() || columnList.contains(columnName)) {
-                setField(field, this, cursor, columnName);
-            }
+            values.put(key, value.toString());
         }
     }
 
-    private <T extends Query> void setField(Field field, T columns, Cursor cursor, String columnName) {
-        try {
-            int columnIndex = cursor.getColumnIndex(columnName);
-            Class<?> dataTypeClass = field.getType();
-
-            if ((dataTypeClass == Integer.class || dataTypeClass == int.class)) {
-                field.set(columns, cursor.getInt(columnIndex));
-            } else if (dataTypeClass == Long.class || dataTypeClass == long.class) {
-                field.set(columns, cursor.getLong(columnIndex));
-            } else if (dataTypeClass == String.class) {
-                field.set(columns, cursor.getString(columnIndex));
-            } else if (dataTypeClass == Short.class || dataTypeClass == short.class) {
-                field.set(columns, cursor.getShort(columnIndex));
-            } else if (dataTypeClass == Double.class || dataTypeClass == double.class) {
-                field.set(columns, cursor.getDouble(columnIndex));
-            } else if (dataTypeClass == Float.class || dataTypeClass == float.class) {
-                field.set(columns, cursor.getFloat(columnIndex));
-            } else if (dataTypeClass == Boolean.class || dataTypeClass == boolean.class) {
-                field.set(columns, cursor.getInt(columnIndex) == 1);
-            } else if (dataTypeClass == Byte[].class || dataTypeClass == byte[].class) {
-                field.set(columns, cursor.getBlob(columnIndex));
-            } else {
-                throw new SQLiteException("Field [" + field.getName() + "] is not supported.");
-            }
-        } catch (IllegalAccessException e) {
-            throw new SQLiteException("IllegalAccessException:" + e.getMessage());
-        } catch (IllegalArgumentException e) {
-            Table table = this.getClass().getAnnotation(Table.class);
-            throw new SQLiteException("Ursor value cannot be converted to field's value for field [" + field.getName()
-                    + "] in table [" + table.value() + "]");
-        }
+    /**
+     * Read the Content from a ContentCursor.
+     */
+    @SuppressWarnings("unchecked")
+    public void restore(Cursor cursor, String[] columns) {
+        EntityMeta<Query> meta = (EntityMeta<Query>) ReflectTools.getEntityMeta(getClass());
+        meta.newBindingPlan(cursor, columns).restore(this, cursor);
     }
 }
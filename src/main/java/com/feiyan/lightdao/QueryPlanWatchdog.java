@@ -0,0 +1,130 @@
+package com.feiyan.lightdao;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Diagnostics of query plan, it runs EXPLAIN QUERY PLAN on every new query of
+ * {@link com.feiyan.lightdao.conditionbuilder.ConditionBuilder#applySearch()} and
+ * {@link com.feiyan.lightdao.conditionbuilder.MultiTableConditionBuilder#applySearch()} and reports
+ * full table scan and temporary B-tree used for ORDER BY, GROUP BY or DISTINCT. Every sql text is
+ * checked only once per database, since plan depends on the indexes of database. It's enabled by
+ * {@link DBUtils#enableQueryPlanCheck(Listener)}, which is meant for debug builds: checked queries
+ * are remembered until it's disabled, so memory used grows with every distinct sql text.
+ *
+ * @author zhangfei
+ */
+public final class QueryPlanWatchdog {
+    private static final String LIBRARY_PACKAGE = "com.feiyan.lightdao";
+
+    private static volatile Listener listener;
+    // database key and sql text of checked queries, never evicted while enabled
+    private static final Set<String> checkedQueries = new HashSet<>();
+
+    private QueryPlanWatchdog() {
+    }
+
+    static void enable(Listener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("listener cannot be null");
+        }
+        QueryPlanWatchdog.listener = listener;
+    }
+
+    static void disable() {
+        listener = null;
+        synchronized (checkedQueries) {
+            checkedQueries.clear();
+        }
+    }
+
+    /**
+     * Check plan of query if it's enabled and query is not checked yet.
+     */
+    public static void check(SQLiteDatabase database, SQL sql) {
+        Listener current = listener;
+        if (current == null) {
+            return;
+        }
+        if (!markChecked(DBUtils.getDatabaseKey(database), sql.getSql())) {
+            return;
+        }
+
+        List<String> warnings = new ArrayList<>();
+        StringBuilder plan = new StringBuilder();
+        Cursor cursor = null;
+        try {
+            cursor = new SQL("EXPLAIN QUERY PLAN " + sql.getSql(), sql.getBindArgsAsArray()).rawQuery(database);
+            int detailIndex = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) {
+                String detail = cursor.getString(detailIndex);
+                plan.append(plan.length() > 0 ? "\n" : "").append(detail);
+                if (isFullScan(detail) || detail.startsWith("USE TEMP B-TREE")) {
+                    warnings.add(detail);
+                }
+            }
+        } catch (SQLiteException e) {
+            Log.e(DBUtils.TAG, "check() error: " + DBUtils.getTraceInfo(e));
+            return;
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+
+        if (!warnings.isEmpty()) {
+            current.onQueryPlanWarning(sql.getSql(), warnings, plan.toString(), getCallSite());
+        }
+    }
+
+    /**
+     * @return true if query of database is not checked before
+     */
+    static boolean markChecked(String databaseKey, String sql) {
+        synchronized (checkedQueries) {
+            return checkedQueries.add(databaseKey + "\n" + sql);
+        }
+    }
+
+    /**
+     * Detail of full scan is "SCAN TABLE t" before SQLite 3.36 and "SCAN t" since then, scan
+     * using index is followed by "USING ...".
+     */
+    static boolean isFullScan(String detail) {
+        return detail.startsWith("SCAN ")
+                && !detail.contains(" USING ")
+                && !detail.startsWith("SCAN CONSTANT ROW");
+    }
+
+    /**
+     * @return the first stack frame out of this library
+     */
+    private static StackTraceElement getCallSite() {
+        StackTraceElement[] stackTrace = new Throwable().getStackTrace();
+        for (StackTraceElement element : stackTrace) {
+            if (!element.getClassName().startsWith(LIBRARY_PACKAGE + ".")) {
+                return element;
+            }
+        }
+        return stackTrace.length > 0 ? stackTrace[stackTrace.length - 1] : null;
+    }
+
+    public interface Listener {
+        /**
+         * Called on the querying thread when plan of a new query has problems.
+         *
+         * @param sql      sql text of query
+         * @param warnings plan lines of full table scan or temporary B-tree
+         * @param plan     all lines of query plan
+         * @param callSite the first stack frame out of this library
+         */
+        void onQueryPlanWarning(String sql, List<String> warnings, String plan, StackTraceElement callSite);
+    }
+}
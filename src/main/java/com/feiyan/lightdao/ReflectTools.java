@@ -6,8 +6,7 @@ import android.database.sqlite.SQLiteException;
 import android.text.TextUtils;
 
 import com.feiyan.lightdao.annotation.Column;
-import com.feiyan.lightdao.annotation.Table;
-import com.feiyan.lightdao.annotation.OrderBy;
+
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
@@ -15,6 +14,8 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * A tool used to read annotation property on class and field.
@@ -22,35 +23,63 @@ import java.util.Map;
  * @author zhangfei
  */
 public class ReflectTools {
-    private static Map<Class<? extends Query>, String> classTableNameCache = new HashMap<>();
-    private static Map<Class<? extends Query>, Field[]> classFieldsCache = new HashMap<>();
+    // metadata registry, values are immutable and shared by all threads
+    private static final ConcurrentMap<Class<? extends Query>, Field[]> classFieldsCache = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<Class<? extends Query>, EntityMeta<?>> classEntityMetaCache = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<Field, ColumnMeta> columnMetaCache = new ConcurrentHashMap<>();
+
+    /**
+     * Suffix of class name generated by light-dao-processor for every table or query class.
+     */
+    public static final String ROW_MAPPER_SUFFIX = "_RowMapper";
 
     public static <T extends Entity> String getTableName(Class<T> tableClass) {
-        String tableName = classTableNameCache.get(tableClass);
+        String tableName = getEntityMeta(tableClass).getTableName();
         if (TextUtils.isEmpty(tableName)) {
-            Table table = tableClass.getAnnotation(Table.class);
-            if (table == null) {
-                throw new SQLiteException(
-                        "Table annotation is not defined on ["
-                                + tableClass.getSimpleName() + "]");
-            }
-
-            tableName = table.value();
-            classTableNameCache.put(tableClass, tableName);
+            throw new SQLiteException(
+                    "Table annotation is not defined on ["
+                            + tableClass.getSimpleName() + "]");
         }
         return tableName;
     }
 
     public static <T extends Entity> String getDefaultOrderBy(Class<T> tableClass){
-        OrderBy orderBy = tableClass.getAnnotation(OrderBy.class);
-        if (orderBy != null) {
-            return orderBy.value();
-        }
-
-        return null;
+        return getEntityMeta(tableClass).getDefaultOrderBy();
     }
 
+    /**
+     * @return a new copy of column info, it's read from the cached {@link ColumnMeta} of field
+     */
     public static ColumnInfo getColumnInfo(Field field) {
+        ColumnMeta meta = getColumnMeta(field);
+        ColumnInfo info = new ColumnInfo();
+        info.setName(meta.getName());
+        info.setAliasName(meta.getAliasName());
+        info.setNotNull(meta.isNotNull());
+        info.setUnique(meta.isUnique());
+        info.setDefVal(meta.getDefVal());
+        return info;
+    }
+
+    /**
+     * Get metadata of column field, it's built at first call and cached.
+     */
+    static ColumnMeta getColumnMeta(Field field) {
+        ColumnMeta meta = columnMetaCache.get(field);
+        if (meta == null) {
+            ColumnMeta newMeta = new ColumnMeta(field);
+            meta = columnMetaCache.putIfAbsent(field, newMeta);
+            if (meta == null) {
+                meta = newMeta;
+            }
+        }
+        return meta;
+    }
+
+    /**
+     * Read {@link Column} annotation of field, it's called once per field by {@link ColumnMeta}.
+     */
+    static ColumnInfo readColumnInfo(Field field) {
         Column column = field.getAnnotation(Column.class);
         if (column == null) {
             throw new SQLiteException("@Column was not defined for field ["
@@ -111,11 +140,65 @@ public class ReflectTools {
             totalFields.removeAll(fieldsToRemove);
 
             fields = totalFields.toArray(new Field[totalFields.size()]);
-            classFieldsCache.put(clazz, fields);
+            Field[] cachedFields = classFieldsCache.putIfAbsent(clazz, fields);
+            if (cachedFields != null) {
+                fields = cachedFields;
+            }
         }
         return fields;
     }
 
+    /**
+     * Get metadata of table or query class, it's built at first call and cached.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends Query> EntityMeta<T> getEntityMeta(Class<T> clazz) {
+        EntityMeta<T> meta = (EntityMeta<T>) classEntityMetaCache.get(clazz);
+        if (meta == null) {
+            // another thread may build it at the same time, the first one wins
+            EntityMeta<T> newMeta = new EntityMeta<>(clazz);
+            meta = (EntityMeta<T>) classEntityMetaCache.putIfAbsent(clazz, newMeta);
+            if (meta == null) {
+                meta = newMeta;
+            }
+        }
+        return meta;
+    }
+
+    /**
+     * Find the compile time generated mapper of class.
+     *
+     * @return mapper instance or null if there is no generated one
+     */
+    public static <T extends Query> RowMapper<T> getRowMapper(Class<T> clazz) {
+        return getEntityMeta(clazz).getRowMapper();
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T extends Query> RowMapper<T> loadRowMapper(Class<T> clazz) {
+        try {
+            Class<?> mapperClass = Class.forName(clazz.getName() + ROW_MAPPER_SUFFIX, true, clazz.getClassLoader());
+            return (RowMapper<T>) mapperClass.newInstance();
+        } catch (ClassNotFoundException e) {
+            // not generated, fall back to reflection
+            return null;
+        } catch (InstantiationException e) {
+            throw new SQLiteException("InstantiationException: " + e.getMessage());
+        } catch (IllegalAccessException e) {
+            throw new SQLiteException("IllegalAccessException: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Build and cache metadata of classes in advance, so that the first query of them
+     * doesn't need to scan annotations.
+     */
+    public static void prewarm(List<? extends Class<? extends Query>> classes) {
+        for (Class<? extends Query> clazz : classes) {
+            getEntityMeta(clazz);
+        }
+    }
+
     interface DataType {
         String INTEGER = "INTEGER";
 
@@ -164,6 +247,30 @@ public class ReflectTools {
         }
     }
 
+    /**
+     * @return creation sql of existing indexes of table whose name starts with prefix, keyed by index name
+     */
+    static Map<String, String> getIndexes(SQLiteDatabase db, String tableName, String prefix) {
+        Map<String, String> indexes = new HashMap<>();
+        Cursor cursor = null;
+        try {
+            // sql of index created by UNIQUE or PRIMARY KEY constraint is null
+            cursor = db.rawQuery("SELECT name, sql FROM sqlite_master WHERE type='index' AND tbl_name=? AND sql IS NOT NULL",
+                    new String[]{tableName});
+            while (cursor.moveToNext()) {
+                String name = cursor.getString(0);
+                if (name.startsWith(prefix)) {
+                    indexes.put(name, cursor.getString(1));
+                }
+            }
+            return indexes;
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+    }
+
     static boolean isColumnExist(SQLiteDatabase db, String tableName, String columnName) {
         Cursor cursor = null;
         try {
@@ -0,0 +1,312 @@
+package com.feiyan.lightdao;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.util.LruCache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size bounded LRU cache of list query results keyed by database, class, sql text and bind
+ * arguments, it's
+ * consulted by applySearchAsList of {@link com.feiyan.lightdao.conditionbuilder.ConditionBuilder}
+ * and {@link com.feiyan.lightdao.conditionbuilder.MultiTableConditionBuilder}. It's enabled by
+ * {@link DBUtils#enableResultCache(int, int)}.
+ * <p>
+ * Every table of every database has a version which is increased by every write through this
+ * library, and every result keeps the versions of tables it read, taken before the query. A
+ * result is dropped when any of its tables has a newer version. Databases are told apart by
+ * path, so a write never drops results of another database. Writes made with raw SQL are not
+ * seen, call {@link #invalidate(SQLiteDatabase, String)} after them.
+ * <p>
+ * Like {@link EntityCache}, column values are cached and every lookup creates new objects.
+ *
+ * @author zhangfei
+ */
+public final class ResultCache {
+    // estimated bytes of object header, array header and reference
+    private static final int OBJECT_SIZE = 16;
+    private static final int REFERENCE_SIZE = 8;
+
+    // versions of tables of every database keyed by DBUtils.getDatabaseKey, then by table name
+    private static final ConcurrentMap<String, ConcurrentMap<String, AtomicLong>> versions = new ConcurrentHashMap<>();
+    private static volatile ResultCache instance;
+
+    private final LruCache<Key, Result> cache;
+    private final int maxRows;
+    private final AtomicInteger hitCount = new AtomicInteger();
+    private final AtomicInteger missCount = new AtomicInteger();
+
+    private ResultCache(int maxBytes, int maxRows) {
+        this.maxRows = maxRows;
+        this.cache = new LruCache<Key, Result>(maxBytes) {
+            @Override
+            protected int sizeOf(Key key, Result result) {
+                return result.size;
+            }
+        };
+    }
+
+    /**
+     * @return the cache, null if it's not enabled
+     */
+    public static ResultCache getInstance() {
+        return instance;
+    }
+
+    static void enable(int maxBytes, int maxRows) {
+        if (maxBytes <= 0 || maxRows <= 0) {
+            throw new IllegalArgumentException("budget of result cache must be positive");
+        }
+        instance = new ResultCache(maxBytes, maxRows);
+    }
+
+    static void disable() {
+        instance = null;
+    }
+
+    /**
+     * Drop cached results which read table of table class in database.
+     */
+    public static void invalidate(SQLiteDatabase database, Class<? extends Entity> tableClass) {
+        invalidate(database, ReflectTools.getTableName(tableClass));
+    }
+
+    /**
+     * Drop cached results which read table in database.
+     */
+    public static void invalidate(SQLiteDatabase database, String tableName) {
+        invalidate(DBUtils.getDatabaseKey(database), tableName);
+    }
+
+    static void invalidate(String databaseKey, String tableName) {
+        getVersion(databaseKey, tableName).incrementAndGet();
+    }
+
+    /**
+     * @return current versions of tables in database, which should be passed to
+     * {@link #put(SQLiteDatabase, Class, SQL, String[], long[], List)} for result queried after it
+     */
+    public static long[] getVersions(SQLiteDatabase database, String... tableNames) {
+        return getVersions(DBUtils.getDatabaseKey(database), tableNames);
+    }
+
+    static long[] getVersions(String databaseKey, String... tableNames) {
+        long[] result = new long[tableNames.length];
+        for (int i = 0; i < tableNames.length; i++) {
+            result[i] = getVersion(databaseKey, tableNames[i]).get();
+        }
+        return result;
+    }
+
+    private static AtomicLong getVersion(String databaseKey, String tableName) {
+        ConcurrentMap<String, AtomicLong> databaseVersions = versions.get(databaseKey);
+        if (databaseVersions == null) {
+            ConcurrentMap<String, AtomicLong> created = new ConcurrentHashMap<>();
+            databaseVersions = versions.putIfAbsent(databaseKey, created);
+            if (databaseVersions == null) {
+                databaseVersions = created;
+            }
+        }
+
+        // table name is case insensitive in SQLite
+        String key = tableName.toLowerCase(Locale.US);
+        AtomicLong version = databaseVersions.get(key);
+        if (version == null) {
+            AtomicLong created = new AtomicLong();
+            version = databaseVersions.putIfAbsent(key, created);
+            if (version == null) {
+                version = created;
+            }
+        }
+        return version;
+    }
+
+    /**
+     * @return new objects of cached result, null if not cached or any table it read is changed
+     */
+    public <T extends Query> List<T> get(SQLiteDatabase database, Class<T> clazz, SQL sql) {
+        return get(DBUtils.getDatabaseKey(database), clazz, sql);
+    }
+
+    <T extends Query> List<T> get(String databaseKey, Class<T> clazz, SQL sql) {
+        Key key = new Key(databaseKey, clazz, sql);
+        Result result = cache.get(key);
+        if (result == null || !result.isCurrent()) {
+            if (result != null) {
+                cache.remove(key);
+            }
+            missCount.incrementAndGet();
+            return null;
+        }
+        hitCount.incrementAndGet();
+
+        EntityMeta<T> meta = ReflectTools.getEntityMeta(clazz);
+        List<T> rows = new ArrayList<>(result.values.length);
+        for (int i = 0; i < result.values.length; i++) {
+            // blob is copied so that changing it in place never changes the cache
+            Object[] copy = result.values[i].clone();
+            for (int j = 0; j < copy.length; j++) {
+                if (copy[j] instanceof byte[]) {
+                    copy[j] = ((byte[]) copy[j]).clone();
+                }
+            }
+
+            T row = meta.newInstance();
+            meta.setValues(row, copy);
+            if (result.loadedValues != null) {
+                // loaded values are never changed, they are shared by every copy
+                ((Entity) row).loadedValues = result.loadedValues[i];
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    /**
+     * Put result read from database, it's ignored if it has more rows than row budget.
+     *
+     * @param tableNames tables read by query
+     * @param versions   versions of tables taken before query by
+     *                   {@link #getVersions(SQLiteDatabase, String...)}
+     */
+    public <T extends Query> void put(SQLiteDatabase database, Class<T> clazz, SQL sql,
+                                      String[] tableNames, long[] versions, List<T> rows) {
+        put(DBUtils.getDatabaseKey(database), clazz, sql, tableNames, versions, rows);
+    }
+
+    <T extends Query> void put(String databaseKey, Class<T> clazz, SQL sql,
+                               String[] tableNames, long[] versions, List<T> rows) {
+        if (rows.size() > maxRows) {
+            return;
+        }
+
+        EntityMeta<T> meta = ReflectTools.getEntityMeta(clazz);
+        boolean tracked = Entity.class.isAssignableFrom(clazz);
+        Object[][] values = new Object[rows.size()][];
+        Object[][] loadedValues = tracked ? new Object[rows.size()][] : null;
+        int size = OBJECT_SIZE + 2 * sql.getSql().length();
+        for (int i = 0; i < values.length; i++) {
+            T row = rows.get(i);
+            values[i] = meta.snapshot(row, null);
+            size += sizeOf(values[i]);
+            if (tracked) {
+                // only records of partial columns are tracked since they are read
+                loadedValues[i] = ((Entity) row).loadedValues;
+                if (loadedValues[i] != null) {
+                    size += OBJECT_SIZE + REFERENCE_SIZE * values[i].length;
+                }
+            }
+        }
+
+        Result result = new Result(databaseKey, tableNames.clone(), versions.clone(), values, loadedValues, size);
+        if (result.isCurrent()) {
+            cache.put(new Key(databaseKey, clazz, sql), result);
+        }
+    }
+
+    private static int sizeOf(Object[] values) {
+        int size = OBJECT_SIZE + REFERENCE_SIZE * values.length;
+        for (Object value : values) {
+            if (value instanceof String) {
+                size += OBJECT_SIZE * 2 + 2 * ((String) value).length();
+            } else if (value instanceof byte[]) {
+                size += OBJECT_SIZE + ((byte[]) value).length;
+            } else if (value != null) {
+                size += OBJECT_SIZE;
+            }
+        }
+        return size;
+    }
+
+    public void clear() {
+        cache.evictAll();
+    }
+
+    /**
+     * @return estimated bytes of cached results
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    public int getHitCount() {
+        return hitCount.get();
+    }
+
+    public int getMissCount() {
+        return missCount.get();
+    }
+
+    public int getEvictionCount() {
+        return cache.evictionCount();
+    }
+
+    private static final class Result {
+        private final String databaseKey;
+        private final String[] tableNames;
+        private final long[] versions;
+        private final Object[][] values;
+        private final Object[][] loadedValues;
+        private final int size;
+
+        Result(String databaseKey, String[] tableNames, long[] versions, Object[][] values,
+               Object[][] loadedValues, int size) {
+            this.databaseKey = databaseKey;
+            this.tableNames = tableNames;
+            this.versions = versions;
+            this.values = values;
+            this.loadedValues = loadedValues;
+            this.size = size;
+        }
+
+        boolean isCurrent() {
+            return Arrays.equals(versions, getVersions(databaseKey, tableNames));
+        }
+    }
+
+    private static final class Key {
+        private final String databaseKey;
+        private final Class<?> clazz;
+        private final String sql;
+        private final Object[] args;
+        private final int hash;
+
+        Key(String databaseKey, Class<?> clazz, SQL sql) {
+            this.databaseKey = databaseKey;
+            this.clazz = clazz;
+            this.sql = sql.getSql();
+            this.args = sql.getBindArgsAsArray();
+            int hash = 31 * databaseKey.hashCode() + clazz.hashCode();
+            this.hash = 31 * (31 * hash + this.sql.hashCode()) + Arrays.deepHashCode(args);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+
+            Key key = (Key) o;
+            return hash == key.hash
+                    && clazz == key.clazz
+                    && databaseKey.equals(key.databaseKey)
+                    && sql.equals(key.sql)
+                    && Arrays.deepEquals(args, key.args);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
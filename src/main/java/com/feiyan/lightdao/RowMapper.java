@@ -0,0 +1,70 @@
+package com.feiyan.lightdao;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteProgram;
+
+/**
+ * Maps a table or query class to database rows without reflection. Implementations are generated
+ * at compile time by light-dao-processor and named as the mapped class with suffix "_RowMapper",
+ * when no mapper is generated the reflection way is used instead.
+ *
+ * @author zhangfei
+ */
+public interface RowMapper<T extends Query> {
+
+    /**
+     * Create a new empty instance of mapped class.
+     */
+    T newInstance();
+
+    /**
+     * Names of all mapped columns, in the declaration order of fields with fields of superclass
+     * first. {@link EntityMeta#getColumns()} is arranged in this order, since order of reflected
+     * fields is not defined.
+     */
+    String[] getColumnNames();
+
+    /**
+     * Read row values into target object.
+     *
+     * @param columnIndexes cursor column index of every column in {@link #getColumnNames()},
+     *                      negative index means the column should be skipped
+     */
+    void restore(T target, Cursor cursor, int[] columnIndexes);
+
+    /**
+     * Write not null column values into ContentValues container.
+     */
+    void toContentValues(T source, ContentValues values);
+
+    /**
+     * Write column values as they are, null value is kept.
+     *
+     * @param values array with the same length as {@link #getColumnNames()}
+     */
+    void getValues(T source, Object[] values);
+
+    /**
+     * Set column values into target object, values are in the same form as {@link #getValues}.
+     *
+     * @param values array with the same length as {@link #getColumnNames()}
+     */
+    void setValues(T target, Object[] values);
+
+    /**
+     * Write column values as bind arguments for insert, null value is replaced by the default
+     * value of its data type.
+     *
+     * @param bindArgs array with the same length as {@link #getColumnNames()}
+     */
+    void toBindArgs(T source, Object[] bindArgs);
+
+    /**
+     * Bind column values to statement, null value is replaced by the default value of its data type.
+     *
+     * @param bindIndexes bind position (starts from 1) of every column in {@link #getColumnNames()},
+     *                    zero or negative position means the column should be skipped
+     */
+    void bind(T source, SQLiteProgram program, int[] bindIndexes);
+}
@@ -1,5 +1,14 @@
 package com.feiyan.lightdao;
 
+import android.database.Cursor;
+import android.database.sqlite.SQLiteCursor;
+import android.database.sqlite.SQLiteCursorDriver;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteProgram;
+import android.database.sqlite.SQLiteQuery;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.Arrays;
 import java.util.LinkedList;
 
 /**
@@ -9,8 +18,11 @@ import java.util.LinkedList;
  * 
  */
 public final class SQL {
+	private static final Object[] EMPTY_ARGS = new Object[0];
+
 	private String sql;
-	private LinkedList<Object> bindArgs;
+	private Object[] bindArgs = EMPTY_ARGS;
+	private int bindArgCount;
 
 	public SQL() {
 	}
@@ -32,53 +44,131 @@ public final class SQL {
 		this.sql = sql;
 	}
 
+	/**
+	 * @deprecated arguments are kept in an array now, this returns a copy of them and changing
+	 * it doesn't change this sql, use {@link #getBindArgsAsArray()} or {@link #getBindArgCount()}
+	 * instead.
+	 */
+	@Deprecated
 	public LinkedList<Object> getBindArgs() {
-		return bindArgs;
+		if (bindArgCount == 0) {
+			return null;
+		}
+
+		return new LinkedList<>(Arrays.asList(bindArgs).subList(0, bindArgCount));
+	}
+
+	public int getBindArgCount() {
+		return bindArgCount;
 	}
 
 	public Object[] getBindArgsAsArray() {
-		if (bindArgs != null) {
-			return bindArgs.toArray();
+		if (bindArgCount == 0) {
+			return null;
 		}
 
-		return null;
+		return Arrays.copyOf(bindArgs, bindArgCount);
 	}
 
 	public String[] getBindArgsAsStringArray() {
-		if (bindArgs != null) {
-			String[] strings = new String[bindArgs.size()];
-			for (int i = 0; i < bindArgs.size(); i++) {
-				Object value = bindArgs.get(i);
-				strings[i] = value == null ? null : value.toString();
-			}
-			return strings;
+		if (bindArgCount == 0) {
+			return null;
 		}
 
-		return null;
+		String[] strings = new String[bindArgCount];
+		for (int i = 0; i < bindArgCount; i++) {
+			Object value = bindArgs[i];
+			strings[i] = value == null ? null : value.toString();
+		}
+		return strings;
 	}
 
 	public void addBindArg(Object arg) {
-		if (bindArgs == null) {
-			bindArgs = new LinkedList<>();
-		}
-		bindArgs.add(arg);
+		ensureCapacity(bindArgCount + 1);
+		bindArgs[bindArgCount++] = arg;
 	}
 
+	/**
+	 * @deprecated values are always sent as bind arguments now, escaping them changes their
+	 * value, use {@link #addBindArg(Object)} instead.
+	 */
+	@Deprecated
 	public void addConvertedBindArg(Object arg) {
-		if (bindArgs == null) {
-			bindArgs = new LinkedList<>();
-		}
-		bindArgs.add(convertEscapeChar(arg));
+		addBindArg(convertEscapeChar(arg));
 	}
 
 	public void addBindArgs(Object... bindArgs) {
-		if (bindArgs != null) {
-			for (Object arg : bindArgs) {
-				addBindArg(arg);
+		if (bindArgs != null && bindArgs.length > 0) {
+			ensureCapacity(bindArgCount + bindArgs.length);
+			System.arraycopy(bindArgs, 0, this.bindArgs, bindArgCount, bindArgs.length);
+			bindArgCount += bindArgs.length;
+		}
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity > bindArgs.length) {
+			bindArgs = Arrays.copyOf(bindArgs, Math.max(capacity, Math.max(bindArgs.length * 2, 8)));
+		}
+	}
+
+	/**
+	 * Bind arguments to compiled statement with the binding method of their types.
+	 */
+	public void bindTo(SQLiteProgram program) {
+		program.clearBindings();
+		for (int i = 0; i < bindArgCount; i++) {
+			bindArg(program, i + 1, bindArgs[i]);
+		}
+	}
+
+	/**
+	 * Run query with arguments bound by their own types rather than as strings.
+	 */
+	public Cursor rawQuery(SQLiteDatabase database) {
+		return database.rawQueryWithFactory(new SQLiteDatabase.CursorFactory() {
+			@Override
+			public Cursor newCursor(SQLiteDatabase db, SQLiteCursorDriver driver, String editTable,
+									SQLiteQuery query) {
+				bindTo(query);
+				return new SQLiteCursor(driver, editTable, query);
 			}
+		}, sql, null, null);
+	}
+
+	/**
+	 * Execute UPDATE or DELETE with arguments bound by their own types.
+	 *
+	 * @return count of affected rows
+	 */
+	public int executeUpdateDelete(SQLiteDatabase database) {
+		SQLiteStatement statement = database.compileStatement(sql);
+		try {
+			bindTo(statement);
+			return statement.executeUpdateDelete();
+		} finally {
+			statement.close();
+		}
+	}
+
+	/**
+	 * Bind argument with the binding method of its type, Boolean is bound as 1 or 0.
+	 */
+	public static void bindArg(SQLiteProgram program, int index, Object arg) {
+		if (arg == null) {
+			program.bindNull(index);
+		} else if (arg instanceof byte[]) {
+			program.bindBlob(index, (byte[]) arg);
+		} else if (arg instanceof Double || arg instanceof Float) {
+			program.bindDouble(index, ((Number) arg).doubleValue());
+		} else if (arg instanceof Number) {
+			program.bindLong(index, ((Number) arg).longValue());
+		} else if (arg instanceof Boolean) {
+			program.bindLong(index, (Boolean) arg ? 1 : 0);
+		} else {
+			program.bindString(index, arg.toString());
 		}
 	}
-	
+
 	static Object convertEscapeChar(Object value) {
 		if (value instanceof Boolean) {
 			return Boolean.valueOf(value.toString()) ? 1 : 0;
@@ -3,17 +3,23 @@ package com.feiyan.lightdao;
 import android.content.ContentValues;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteException;
+import android.os.Build;
 import android.text.TextUtils;
 
 import com.feiyan.lightdao.annotation.Column;
 import com.feiyan.lightdao.annotation.Foreign;
 import com.feiyan.lightdao.annotation.ID;
+import com.feiyan.lightdao.annotation.Index;
+import com.feiyan.lightdao.annotation.Indexes;
 import com.feiyan.lightdao.annotation.Table;
 
 import java.io.Serializable;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -22,6 +28,22 @@ import java.util.Set;
  * @author zhangfei
  */
 public final class SQLBuilder {
+    /**
+     * Default SQLITE_MAX_VARIABLE_NUMBER, max count of host parameters in one statement.
+     */
+    public static final int MAX_BIND_ARGS = 999;
+
+    /**
+     * Default SQLITE_MAX_COMPOUND_SELECT before SQLite 3.8.8, multi-row VALUES is run as compound
+     * SELECT by these versions, so it's also max count of rows in one INSERT statement.
+     */
+    public static final int MAX_INSERT_ROWS = 500;
+
+    /**
+     * Android 11 bundles SQLite 3.28 which supports INSERT ... ON CONFLICT DO UPDATE.
+     */
+    private static final int SDK_VERSION_UPSERT = 30;
+
     private SQLBuilder() {
     }
 
@@ -46,7 +68,7 @@ public final class SQLBuilder {
             }
 
             // add column definition
-            String columnName = ReflectTools.getColumnInfo(field).getName();
+            String columnName = ReflectTools.getColumnMeta(field).getName();
 
             validateFieldType(field, tableName);
 
@@ -92,6 +114,66 @@ public final class SQLBuilder {
         return new SQL(buffer.toString());
     }
 
+    /**
+     * build index creation sql of every index declared by {@link Index} and {@link Indexes},
+     * keyed by index name
+     */
+    public static Map<String, SQL> buildCreateIndexSQL(Class<? extends Entity> tableClass) {
+        List<Index> indexes = new ArrayList<>();
+        Index single = tableClass.getAnnotation(Index.class);
+        if (single != null) {
+            indexes.add(single);
+        }
+        Indexes multiple = tableClass.getAnnotation(Indexes.class);
+        if (multiple != null) {
+            indexes.addAll(Arrays.asList(multiple.value()));
+        }
+
+        String tableName = ReflectTools.getTableName(tableClass);
+        Map<String, SQL> result = new LinkedHashMap<>();
+        for (Index index : indexes) {
+            if (index.value().length == 0) {
+                throw new SQLException("Index of table [" + tableName + "] has no column");
+            }
+
+            StringBuilder columns = new StringBuilder();
+            List<String> columnNames = new ArrayList<>();
+            for (String term : index.value()) {
+                if (columns.length() > 0) {
+                    columns.append(',');
+                }
+                columns.append(term.trim());
+                // column name without direction, characters of expression are replaced
+                columnNames.add(term.trim().split("\\s+")[0].replaceAll("\\W", "_"));
+            }
+            String name = getIndexPrefix(tableName)
+                    + (!TextUtils.isEmpty(index.name()) ? index.name() : TextUtils.join("_", columnNames));
+
+            StringBuilder buffer = new StringBuilder("CREATE ");
+            if (index.unique()) {
+                buffer.append("UNIQUE ");
+            }
+            buffer.append("INDEX ").append(name).append(" ON ").append(tableName)
+                    .append(" (").append(columns).append(')');
+            if (!TextUtils.isEmpty(index.where())) {
+                buffer.append(" WHERE ").append(index.where());
+            }
+
+            if (result.put(name, new SQL(buffer.toString())) != null) {
+                throw new SQLException("Index [" + name + "] of table [" + tableName + "] is declared twice");
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Prefix of name of every index declared by {@link Index}, index with this prefix but not
+     * declared is dropped by database upgrade.
+     */
+    static String getIndexPrefix(String tableName) {
+        return "idx_" + tableName + "_";
+    }
+
     /**
      * build sql for inserting
      */
@@ -129,6 +211,205 @@ public final class SQLBuilder {
         return sql;
     }
 
+    /**
+     * build parameterized sql for inserting any record of table class, arguments are
+     * all columns except _id in the order of {@link EntityMeta#getColumns()}
+     */
+    public static <T extends Entity> SQL buildInsertSQL(Class<T> tableClass) {
+        return buildInsertSQL(tableClass, 1);
+    }
+
+    /**
+     * build parameterized sql for inserting rowCount records of table class with one
+     * statement: INSERT INTO t (a,b) VALUES (?,?),(?,?)...
+     */
+    public static <T extends Entity> SQL buildInsertSQL(Class<T> tableClass, int rowCount) {
+        EntityMeta<T> meta = ReflectTools.getEntityMeta(tableClass);
+        StringBuilder buffer = new StringBuilder();
+        StringBuilder placeholders = new StringBuilder();
+        buffer.append("INSERT INTO ");
+        buffer.append(ReflectTools.getTableName(tableClass));
+        for (int i = 0; i < meta.getColumnCount(); i++) {
+            String columnName = meta.getColumn(i).getName();
+            if (Entity._ID.equals(columnName)) {
+                continue;
+            }
+            buffer.append(placeholders.length() == 0 ? " (" : ",").append(columnName);
+            placeholders.append(placeholders.length() == 0 ? "(?" : ",?");
+        }
+
+        if (placeholders.length() == 0) {
+            if (rowCount != 1) {
+                throw new SQLiteException("Table [" + meta.getTableName() + "] has no column to insert in bulk.");
+            }
+            buffer.append(" DEFAULT VALUES");
+        } else {
+            placeholders.append(")");
+            buffer.append(") VALUES ").append(placeholders);
+            for (int i = 1; i < rowCount; i++) {
+                buffer.append(",").append(placeholders);
+            }
+        }
+        return new SQL(buffer.toString());
+    }
+
+    /**
+     * build multi-row insert sql with bind arguments for records of one table class, records are
+     * split into chunks so that bind arguments of every sql never exceed {@link #MAX_BIND_ARGS}
+     * and rows never exceed {@link #MAX_INSERT_ROWS}
+     */
+    public static <T extends Entity> List<SQL> buildBulkInsertSQL(Class<T> tableClass, List<T> tables) {
+        List<SQL> sqlList = new ArrayList<>();
+        int rowsPerStatement = getInsertRowsPerStatement(tableClass);
+        SQL fullChunkSql = null;
+        for (int start = 0; start < tables.size(); start += rowsPerStatement) {
+            int rowCount = Math.min(rowsPerStatement, tables.size() - start);
+            SQL sql;
+            if (rowCount == rowsPerStatement) {
+                // all full chunks share the same sql text
+                if (fullChunkSql == null) {
+                    fullChunkSql = buildInsertSQL(tableClass, rowCount);
+                }
+                sql = new SQL(fullChunkSql.getSql());
+            } else {
+                sql = buildInsertSQL(tableClass, rowCount);
+            }
+
+            for (int i = start; i < start + rowCount; i++) {
+                T table = tables.get(i);
+                if (table.getClass() != tableClass) {
+                    throw new SQLiteException("Bulk insert records must be instances of " + tableClass.getName());
+                }
+
+                for (KeyValue<Object> kv : table2KeyValueList(table)) {
+                    if (!Entity._ID.equals(kv.key)) {
+                        sql.addBindArg(kv.value);
+                    }
+                }
+            }
+            sqlList.add(sql);
+        }
+        return sqlList;
+    }
+
+    /**
+     * @return whether SQLite supports INSERT ... ON CONFLICT DO UPDATE, which is added in 3.24
+     * (Android 11)
+     */
+    public static boolean isUpsertSupported() {
+        return Build.VERSION.SDK_INT >= SDK_VERSION_UPSERT;
+    }
+
+    /**
+     * build parameterized sql for inserting or updating any record of table class, arguments are
+     * all columns including _id in the order of {@link EntityMeta#getColumns()}, null _id means
+     * a new record. The conflict target is {@link #getUpsertConflictColumn(Class)}. If
+     * {@link #isUpsertSupported()} is false, it's a plain INSERT which should be run only after
+     * {@link #buildUpsertUpdateSQL(Class)} changed no row.
+     */
+    public static <T extends Entity> SQL buildUpsertSQL(Class<T> tableClass) {
+        EntityMeta<T> meta = ReflectTools.getEntityMeta(tableClass);
+        String conflictColumn = getUpsertConflictColumn(tableClass);
+        boolean onConflictSupported = isUpsertSupported();
+
+        StringBuilder buffer = new StringBuilder("INSERT INTO ");
+        StringBuilder placeholders = new StringBuilder();
+        StringBuilder updates = new StringBuilder();
+        buffer.append(ReflectTools.getTableName(tableClass)).append(" (");
+        for (int i = 0; i < meta.getColumnCount(); i++) {
+            String columnName = meta.getColumn(i).getName();
+            buffer.append(i > 0 ? "," : "").append(columnName);
+            placeholders.append(i > 0 ? ",?" : "?");
+
+            // primary key and conflict target keep their value
+            if (!Entity._ID.equals(columnName) && !columnName.equals(conflictColumn)) {
+                updates.append(updates.length() > 0 ? "," : "")
+                        .append(columnName).append("=excluded.").append(columnName);
+            }
+        }
+        buffer.append(") VALUES (").append(placeholders).append(")");
+
+        if (onConflictSupported) {
+            buffer.append(" ON CONFLICT(").append(conflictColumn).append(")");
+            if (updates.length() > 0) {
+                buffer.append(" DO UPDATE SET ").append(updates);
+            } else {
+                buffer.append(" DO NOTHING");
+            }
+        }
+        return new SQL(buffer.toString());
+    }
+
+    /**
+     * build parameterized sql for updating the row which has the same value of
+     * {@link #getUpsertConflictColumn(Class)} as record, it's the update half of upsert for SQLite
+     * without ON CONFLICT DO UPDATE. Arguments are columns except _id and conflict column in the
+     * order of {@link EntityMeta#getColumns()}, then value of conflict column.
+     */
+    public static <T extends Entity> SQL buildUpsertUpdateSQL(Class<T> tableClass) {
+        return buildUpsertUpdateSQL(tableClass, getUpsertConflictColumn(tableClass));
+    }
+
+    /**
+     * build parameterized sql for updating the row which has the same value of key column as
+     * record. Arguments are columns except _id and key column in the order of
+     * {@link EntityMeta#getColumns()}, then value of key column. With _id as key column, it
+     * updates a saved record by its id, unique columns included.
+     */
+    public static <T extends Entity> SQL buildUpsertUpdateSQL(Class<T> tableClass, String keyColumn) {
+        EntityMeta<T> meta = ReflectTools.getEntityMeta(tableClass);
+
+        StringBuilder updates = new StringBuilder();
+        for (int i = 0; i < meta.getColumnCount(); i++) {
+            String columnName = meta.getColumn(i).getName();
+            if (!Entity._ID.equals(columnName) && !columnName.equals(keyColumn)) {
+                updates.append(updates.length() > 0 ? "," : "").append(columnName).append("=?");
+            }
+        }
+        if (updates.length() == 0) {
+            // nothing to update, the row is only touched so that it's counted as changed
+            updates.append(keyColumn).append("=").append(keyColumn);
+        }
+        return new SQL("UPDATE " + ReflectTools.getTableName(tableClass) + " SET " + updates
+                + " WHERE " + keyColumn + "=?");
+    }
+
+    /**
+     * Conflict target column of upsert: the first unique column of table class or _id if there's none.
+     */
+    public static <T extends Entity> String getUpsertConflictColumn(Class<T> tableClass) {
+        EntityMeta<T> meta = ReflectTools.getEntityMeta(tableClass);
+        for (int i = 0; i < meta.getColumnCount(); i++) {
+            ColumnMeta column = meta.getColumn(i);
+            if (column.isUnique() && !column.isId()) {
+                return column.getName();
+            }
+        }
+        return Entity._ID;
+    }
+
+    /**
+     * Count of records can be inserted with one multi-row insert statement of table class.
+     */
+    public static <T extends Entity> int getInsertRowsPerStatement(Class<T> tableClass) {
+        // multi-row VALUES is supported since SQLite 3.7.11 (Android 4.1)
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+            return 1;
+        }
+
+        EntityMeta<T> meta = ReflectTools.getEntityMeta(tableClass);
+        int argsPerRow = 0;
+        for (int i = 0; i < meta.getColumnCount(); i++) {
+            if (!Entity._ID.equals(meta.getColumn(i).getName())) {
+                argsPerRow++;
+            }
+        }
+        if (argsPerRow == 0) {
+            return 1;
+        }
+        return Math.max(1, Math.min(MAX_INSERT_ROWS, MAX_BIND_ARGS / argsPerRow));
+    }
+
     /**
      * build sql for deleting with table class object
      */
@@ -137,7 +418,7 @@ public final class SQLBuilder {
             throw new SQLiteException("This table[" + table.getClass().getName() + "]'s id value is not illegal.");
         }
 
-        return new SQL("DELETE FROM " + ReflectTools.getTableName(table.getClass()) + " WHERE " + Entity._ID + "=" + table.id);
+        return new SQL("DELETE FROM " + ReflectTools.getTableName(table.getClass()) + " WHERE " + Entity._ID + "=?", table.id);
     }
 
     /**
@@ -155,7 +436,7 @@ public final class SQLBuilder {
             throw new SQLiteException("The record with id '(" + id + ")' is not exist.");
         }
 
-        return new SQL("DELETE FROM " + ReflectTools.getTableName(tableClass) + " WHERE " + Entity._ID + "=" + id);
+        return new SQL("DELETE FROM " + ReflectTools.getTableName(tableClass) + " WHERE " + Entity._ID + "=?", id);
     }
 
     /**
@@ -164,10 +445,13 @@ public final class SQLBuilder {
     public static <T extends Entity> SQL buildDeleteSQL(Class<T> tableClass, String where,
                                                         Object... whereArgs) {
         StringBuilder buffer = new StringBuilder("DELETE FROM " + ReflectTools.getTableName(tableClass));
+        SQL sql = new SQL();
         if (where != null && where.length() > 0) {
-            buffer.append(" WHERE ").append(buildWhere(where, whereArgs));
+            buffer.append(" WHERE ").append(where);
+            sql.addBindArgs(whereArgs);
         }
-        return new SQL(buffer.toString());
+        sql.setSql(buffer.toString());
+        return sql;
     }
 
     /**
@@ -194,7 +478,8 @@ public final class SQLBuilder {
             sql.addBindArg(values.get(columnName));
         }
         sqlBuffer.deleteCharAt(sqlBuffer.length() - 1);
-        sqlBuffer.append(" WHERE ").append(Entity._ID + "=").append(id);
+        sqlBuffer.append(" WHERE ").append(Entity._ID + "=?");
+        sql.addBindArg(id);
 
         sql.setSql(sqlBuffer.toString());
         return sql;
@@ -221,26 +506,25 @@ public final class SQLBuilder {
                 result.addBindArg(values.get(columnName));
             }
         }
+        if (result.getBindArgCount() == 0) {
+            throw new SQLException("ContentValues has no column except " + Entity._ID + ", nothing will be update.");
+        }
         buffer.deleteCharAt(buffer.length() - 1);
         if (where != null && where.length() > 0) {
-            buffer.append(" WHERE ").append(buildWhere(where, whereArgs));
+            buffer.append(" WHERE ").append(where);
+            result.addBindArgs(whereArgs);
         }
 
         result.setSql(buffer.toString());
         return result;
     }
 
-    private static <T extends Entity> KeyValue<Object> column2KeyValue(T table, Field field, Column column) {
-        KeyValue<Object> keyValue = null;
-        String key = column.name();
-        if (!TextUtils.isEmpty(key)) {
-            Object value = ReflectTools.getFieldValue(table, field);
-            if (value == null) {
-                value = getDefaultValueOfField(field.getType());
-            }
-            keyValue = new KeyValue<>(key, value);
+    private static <T extends Entity> KeyValue<Object> column2KeyValue(T table, ColumnMeta column) {
+        Object value = column.getValue(table);
+        if (value == null) {
+            value = getDefaultValueOfField(column.getField().getType());
         }
-        return keyValue;
+        return new KeyValue<>(column.getName(), value);
     }
 
     private static Object getDefaultValueOfField(Class<?> typeClass) {
@@ -265,33 +549,29 @@ public final class SQLBuilder {
         }
     }
 
+    /**
+     * @return name and bind argument of every column in the order of {@link EntityMeta#getColumns()},
+     * the same order as columns of {@link #buildInsertSQL(Class, int)}
+     */
+    @SuppressWarnings("unchecked")
     private static <T extends Entity> ArrayList<KeyValue<Object>> table2KeyValueList(T table) {
         ArrayList<KeyValue<Object>> keyValueList = new ArrayList<>();
-        Field[] fields = ReflectTools.getClassFields(table.getClass());
-
-        for (Field field : fields) {
-            Column column = field.getAnnotation(Column.class);
-            if (column != null) {
-                KeyValue<Object> kv = column2KeyValue(table, field, column);
-                if (kv != null) {
-                    keyValueList.add(kv);
-                }
+        EntityMeta<T> meta = (EntityMeta<T>) ReflectTools.getEntityMeta(table.getClass());
+        RowMapper<T> mapper = meta.getRowMapper();
+        if (mapper != null) {
+            // arguments of mapper are indexed by meta columns, which follow its order
+            Object[] values = new Object[meta.getColumnCount()];
+            mapper.toBindArgs(table, values);
+            for (int i = 0; i < values.length; i++) {
+                keyValueList.add(new KeyValue<>(meta.getColumn(i).getName(), values[i]));
             }
+            return keyValueList;
         }
-        return keyValueList;
-    }
 
-    private static String buildWhere(String where, Object[] whereArgs) {
-        if (whereArgs != null && whereArgs.length > 0) {
-            for (Object arg : whereArgs) {
-                int index = where.indexOf("?");
-                if (index > 0) {
-                    String convertedArg = SQL.convertEscapeChar(arg).toString();
-                    where = where.replaceFirst("\\?", convertedArg);
-                }
-            }
+        for (int i = 0; i < meta.getColumnCount(); i++) {
+            keyValueList.add(column2KeyValue(table, meta.getColumn(i)));
         }
-        return where;
+        return keyValueList;
     }
 
     private static void appendDefaultValue(Column column, Field field, StringBuilder buffer) {
@@ -0,0 +1,153 @@
+package com.feiyan.lightdao;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A unit of work with identity map: every record is loaded from database once and the same
+ * instance is returned for later lookups of its id, writes through the session keep the map
+ * consistent. Writes not made through the session are not seen by it, so a session should be
+ * short lived, like rendering a screen or running a sync batch. It's not thread safe.
+ * Get it by {@link DBUtils#openSession()}.
+ *
+ * @author zhangfei
+ */
+public final class Session {
+    private final DBUtils dbUtils;
+    private final Map<Class<?>, Map<Long, Entity>> identityMap = new HashMap<>();
+
+    Session(DBUtils dbUtils) {
+        this.dbUtils = dbUtils;
+    }
+
+    /**
+     * Find record by id, it's queried from database only on the first lookup.
+     *
+     * @return record or null if not exist
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends Entity> T findById(Class<T> tableClass, long id) {
+        Map<Long, Entity> entities = getEntities(tableClass);
+        T table = (T) entities.get(id);
+        if (table == null) {
+            table = dbUtils.withTable(tableClass).applySearchById(id);
+            if (table != null) {
+                table.trackChanges();
+                entities.put(id, table);
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Put record loaded elsewhere into session, its changes are tracked from now on if they are
+     * not yet, see {@link Entity#toChangedValues()}.
+     *
+     * @return the instance already in session for the same id, or the record itself
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends Entity> T attach(T table) {
+        if (table.id == Entity.NOT_SAVED) {
+            return table;
+        }
+
+        Map<Long, Entity> entities = getEntities(table.getClass());
+        T existing = (T) entities.get(table.id);
+        if (existing != null) {
+            return existing;
+        }
+        table.trackChanges();
+        entities.put(table.id, table);
+        return table;
+    }
+
+    /**
+     * Put records loaded elsewhere into session, see {@link #attach(Entity)}.
+     *
+     * @return instances in session, in the same order as records
+     */
+    public <T extends Entity> List<T> attachAll(List<T> tables) {
+        List<T> result = new ArrayList<>(tables.size());
+        for (T table : tables) {
+            result.add(attach(table));
+        }
+        return result;
+    }
+
+    /**
+     * Insert record and put it into session.
+     *
+     * @return row id of inserted row
+     */
+    public <T extends Entity> long save(T table) {
+        long rowId = dbUtils.save(table);
+        if (rowId > 0) {
+            table.id = rowId;
+            getEntities(table.getClass()).put(rowId, table);
+        }
+        return rowId;
+    }
+
+    /**
+     * Update record and make it the instance of its id in session.
+     *
+     * @return count of updated row
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends Entity> int update(T table) {
+        int count = dbUtils.withTable((Class<T>) table.getClass()).applyUpdate(table);
+        if (table.id != Entity.NOT_SAVED) {
+            getEntities(table.getClass()).put(table.id, table);
+        }
+        return count;
+    }
+
+    /**
+     * Delete record and remove it from session.
+     *
+     * @return count of deleted row
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends Entity> int delete(T table) {
+        return deleteById((Class<T>) table.getClass(), table.id);
+    }
+
+    /**
+     * Delete record by id and remove it from session.
+     *
+     * @return count of deleted row
+     */
+    public <T extends Entity> int deleteById(Class<T> tableClass, long id) {
+        int count = dbUtils.withTable(tableClass).applyDeleteById(id);
+        evict(tableClass, id);
+        return count;
+    }
+
+    /**
+     * Remove record from session, so that next lookup loads it from database again.
+     */
+    public void evict(Class<? extends Entity> tableClass, long id) {
+        Map<Long, Entity> entities = identityMap.get(tableClass);
+        if (entities != null) {
+            entities.remove(id);
+        }
+    }
+
+    /**
+     * Remove all records from session.
+     */
+    public void clear() {
+        identityMap.clear();
+    }
+
+    private Map<Long, Entity> getEntities(Class<?> tableClass) {
+        Map<Long, Entity> entities = identityMap.get(tableClass);
+        if (entities == null) {
+            entities = new HashMap<>();
+            identityMap.put(tableClass, entities);
+        }
+        return entities;
+    }
+}
@@ -0,0 +1,56 @@
+package com.feiyan.lightdao;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A small LRU cache of compiled statements keyed by SQL text, so that jobs sharing the same
+ * SQL template reuse one statement. Evicted statements are closed.
+ *
+ * @author zhangfei
+ */
+final class StatementCache {
+    private static final int MAX_SIZE = 32;
+
+    private final SQLiteDatabase database;
+    private final LinkedHashMap<String, SQLiteStatement> statements =
+            new LinkedHashMap<String, SQLiteStatement>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, SQLiteStatement> eldest) {
+                    if (size() > MAX_SIZE) {
+                        eldest.getValue().close();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+
+    StatementCache(SQLiteDatabase database) {
+        this.database = database;
+    }
+
+    /**
+     * Get compiled statement of sql, it's compiled at first use.
+     */
+    SQLiteStatement get(String sql) {
+        SQLiteStatement statement = statements.get(sql);
+        if (statement == null) {
+            statement = database.compileStatement(sql);
+            statements.put(sql, statement);
+        }
+        return statement;
+    }
+
+    /**
+     * Close all compiled statements.
+     */
+    void close() {
+        for (SQLiteStatement statement : statements.values()) {
+            statement.close();
+        }
+        statements.clear();
+    }
+}
@@ -0,0 +1,332 @@
+package com.feiyan.lightdao;
+
+import android.content.ContentValues;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import com.feiyan.lightdao.conditionbuilder.ConditionBuilder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Asynchronous write queue with group commit: a single writer thread gathers pending writes for a
+ * short window or up to a size cap and commits them in one transaction, so that many small writes
+ * share one journal sync. Future of every write is completed after its transaction is committed.
+ * <p>
+ * Tasks write with plain statements and never touch {@link EntityCache} or {@link ResultCache},
+ * caches of all tables written by a batch are invalidated once after its transaction is
+ * committed, so that no reader can cache rows of the open transaction under a new version.
+ *
+ * @author zhangfei
+ */
+final class WriteQueue implements Runnable {
+    static final long DEFAULT_WINDOW_MILLIS = 10;
+    static final int DEFAULT_MAX_BATCH_SIZE = 500;
+
+    private static final Runnable NO_OP = new Runnable() {
+        @Override
+        public void run() {
+        }
+    };
+
+    // queued by close(), writer thread exits after committing tasks queued before it
+    private static final WriteTask<Void> STOP = new FlushTask();
+
+    private final DBUtils dbUtils;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final BlockingQueue<WriteTask<?>> tasks = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private boolean closed;
+
+    WriteQueue(DBUtils dbUtils, long windowMillis, int maxBatchSize) {
+        if (windowMillis < 0 || maxBatchSize <= 0) {
+            throw new IllegalArgumentException("window must not be negative and batch size must be positive");
+        }
+
+        this.dbUtils = dbUtils;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.maxBatchSize = maxBatchSize;
+        this.writer = new Thread(this, "light-dao-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    synchronized <R> Future<R> submit(WriteTask<R> task) {
+        if (closed) {
+            throw new IllegalStateException("write queue is closed");
+        }
+
+        tasks.add(task);
+        return task;
+    }
+
+    /**
+     * Block until all writes queued before are committed.
+     */
+    void flush() {
+        if (Thread.currentThread() == writer) {
+            return;
+        }
+
+        Future<Void> future = submit(new FlushTask());
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            Log.e(DBUtils.TAG, "flush() error: " + DBUtils.getTraceInfo(e));
+        }
+    }
+
+    /**
+     * Stop accepting writes and block until all queued writes are committed.
+     */
+    void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            tasks.add(STOP);
+        }
+
+        if (Thread.currentThread() == writer) {
+            return;
+        }
+
+        boolean interrupted = false;
+        while (writer.isAlive()) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void run() {
+        List<WriteTask<?>> batch = new ArrayList<>();
+        boolean stopped = false;
+        while (!stopped) {
+            try {
+                WriteTask<?> task = tasks.take();
+                long deadline = System.nanoTime() + windowNanos;
+                while (task != null) {
+                    if (task == STOP) {
+                        stopped = true;
+                        break;
+                    }
+
+                    batch.add(task);
+                    if (batch.size() >= maxBatchSize) {
+                        break;
+                    }
+                    task = tasks.poll(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+                }
+            } catch (InterruptedException e) {
+                // writer is stopped only by close(), gathered tasks are committed below
+            }
+
+            if (!batch.isEmpty()) {
+                commit(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void commit(List<WriteTask<?>> batch) {
+        SQLiteDatabase db = dbUtils.getDatabase();
+        Map<Class<?>, InsertStatement<?>> statements = new HashMap<>();
+        Set<Class<? extends Entity>> tableClasses = new HashSet<>();
+        try {
+            db.beginTransaction();
+            try {
+                for (WriteTask<?> task : batch) {
+                    if (!task.isCancelled()) {
+                        task.perform(db, statements);
+                        if (task.tableClass != null) {
+                            tableClasses.add(task.tableClass);
+                        }
+                    }
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                for (InsertStatement<?> statement : statements.values()) {
+                    statement.close();
+                }
+                db.endTransaction();
+            }
+        } catch (RuntimeException e) {
+            Log.e(DBUtils.TAG, "commit() error: " + DBUtils.getTraceInfo(e));
+
+            // transaction is rolled back, so are the written back ids
+            for (WriteTask<?> task : batch) {
+                task.rollback();
+                task.fail(e);
+            }
+            return;
+        }
+
+        // committed, rows of every table written by the batch may be changed
+        for (Class<? extends Entity> tableClass : tableClasses) {
+            EntityCache.invalidate(db, tableClass);
+            ResultCache.invalidate(db, tableClass);
+        }
+        for (WriteTask<?> task : batch) {
+            task.complete();
+        }
+    }
+
+    /**
+     * A write executed by writer thread, its future is completed after the transaction is
+     * committed. Failure of one write doesn't roll back others of the same transaction.
+     */
+    abstract static class WriteTask<R> extends FutureTask<R> {
+        // table written by task, null if it writes nothing
+        final Class<? extends Entity> tableClass;
+        private R result;
+        private RuntimeException error;
+
+        WriteTask(Class<? extends Entity> tableClass) {
+            super(NO_OP, null);
+            this.tableClass = tableClass;
+        }
+
+        final void perform(SQLiteDatabase db, Map<Class<?>, InsertStatement<?>> statements) {
+            try {
+                result = execute(db, statements);
+            } catch (RuntimeException e) {
+                error = e;
+            }
+        }
+
+        abstract R execute(SQLiteDatabase db, Map<Class<?>, InsertStatement<?>> statements);
+
+        /**
+         * Undo changes made on objects when transaction is rolled back.
+         */
+        void rollback() {
+        }
+
+        final void complete() {
+            if (error != null) {
+                setException(error);
+            } else {
+                set(result);
+            }
+        }
+
+        final void fail(Throwable e) {
+            setException(e);
+        }
+    }
+
+    static final class FlushTask extends WriteTask<Void> {
+        FlushTask() {
+            super(null);
+        }
+
+        @Override
+        Void execute(SQLiteDatabase db, Map<Class<?>, InsertStatement<?>> statements) {
+            return null;
+        }
+    }
+
+    /**
+     * Insert record with one compiled statement per table class in a transaction, generated
+     * row id is written back into record.
+     */
+    static final class SaveTask<T extends Entity> extends WriteTask<Long> {
+        private final T table;
+        private final long originalId;
+
+        SaveTask(T table) {
+            super(table.getClass());
+            this.table = table;
+            this.originalId = table.id;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        Long execute(SQLiteDatabase db, Map<Class<?>, InsertStatement<?>> statements) {
+            InsertStatement<T> statement = (InsertStatement<T>) statements.get(table.getClass());
+            if (statement == null) {
+                statement = new InsertStatement<>(db, (Class<T>) table.getClass());
+                statements.put(table.getClass(), statement);
+            }
+            return statement.insert(table);
+        }
+
+        @Override
+        void rollback() {
+            table.id = originalId;
+        }
+    }
+
+    /**
+     * Update changed columns of record, see {@link ConditionBuilder#applyUpdate(Entity)}.
+     */
+    static final class UpdateTask<T extends Entity> extends WriteTask<Integer> {
+        private final T table;
+        private Object[] loadedValues;
+
+        UpdateTask(T table) {
+            super(table.getClass());
+            this.table = table;
+        }
+
+        @Override
+        Integer execute(SQLiteDatabase db, Map<Class<?>, InsertStatement<?>> statements) {
+            loadedValues = table.loadedValues;
+            ContentValues values = table.toChangedValues();
+            if (values.size() == 0) {
+                return 0;
+            }
+
+            int count = SQLBuilder.buildUpdateSQL(table.getClass(), values, Entity._ID + " = ?", table.id)
+                    .executeUpdateDelete(db);
+            if (count > 0) {
+                table.clearChanges();
+            }
+            return count;
+        }
+
+        @Override
+        void rollback() {
+            table.loadedValues = loadedValues;
+        }
+    }
+
+    static final class DeleteTask<T extends Entity> extends WriteTask<Integer> {
+        private final T table;
+
+        DeleteTask(T table) {
+            super(table.getClass());
+            this.table = table;
+        }
+
+        @Override
+        Integer execute(SQLiteDatabase db, Map<Class<?>, InsertStatement<?>> statements) {
+            if (table.id == Entity.NOT_SAVED) {
+                return 0;
+            }
+            return SQLBuilder.buildDeleteSQL(table.getClass(), table.id).executeUpdateDelete(db);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.feiyan.lightdao.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Used to enable entity cache for table, records loaded by id are kept in a LRU cache of
+ * the table, see {@link com.feiyan.lightdao.EntityCache}.
+ *
+ * @author zhangfei
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Cacheable {
+    /**
+     * max count of records kept in cache
+     */
+    int maxSize() default 100;
+}
@@ -0,0 +1,33 @@
+package com.feiyan.lightdao.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Used to define secondary index for table, put more than one index into {@link Indexes}.
+ * Indexes are created with table and kept the same as declared by database upgrade.
+ *
+ * @author zhangfei
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Index {
+    /**
+     * columns of index in order, every column may be followed by ASC or DESC, like "age DESC"
+     */
+    String[] value();
+
+    /**
+     * name of index, default is made of column names, it's always prefixed with "idx_" and table name
+     */
+    String name() default "";
+
+    boolean unique() default false;
+
+    /**
+     * predicate of partial index, like "deleted = 0", it needs SQLite 3.8.0 (Android 5.0)
+     */
+    String where() default "";
+}
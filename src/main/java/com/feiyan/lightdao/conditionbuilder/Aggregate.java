@@ -0,0 +1,54 @@
+package com.feiyan.lightdao.conditionbuilder;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteException;
+
+/**
+ * Aggregate functions executed by SQLite, see {@link BuilderSupport#applyAggregate(Aggregate, String)}.
+ *
+ * @author zhangfei
+ */
+public enum Aggregate {
+    SUM("sum(", ")"),
+    AVG("avg(", ")"),
+    MIN("min(", ")"),
+    MAX("max(", ")"),
+    COUNT("count(", ")"),
+    COUNT_DISTINCT("count(DISTINCT ", ")");
+
+    private final String prefix;
+    private final String suffix;
+
+    Aggregate(String prefix, String suffix) {
+        this.prefix = prefix;
+        this.suffix = suffix;
+    }
+
+    /**
+     * @param expression column name or expression to aggregate
+     * @return sql of function applied on expression
+     */
+    public String toSql(String expression) {
+        return prefix + expression + suffix;
+    }
+
+    /**
+     * Read INTEGER result of aggregate by {@link Cursor#getLong(int)}, so that it keeps the
+     * precision double loses above 2^53.
+     *
+     * @param name name of result used in error message
+     * @return value of column, 0 if it's NULL
+     * @throws SQLiteException if value is not INTEGER
+     */
+    static long readLong(Cursor cursor, int column, String name) {
+        int type = cursor.getType(column);
+        if (type == Cursor.FIELD_TYPE_NULL) {
+            return 0;
+        }
+        if (type != Cursor.FIELD_TYPE_INTEGER) {
+            throw new SQLiteException("Result of [" + name + "] must be INTEGER to be read as long, but value ["
+                    + cursor.getString(column) + "] is not");
+        }
+        return cursor.getLong(column);
+    }
+}
@@ -22,8 +22,67 @@ public interface BuilderSupport<T extends Query> {
 
     T applySearchById(long id);
 
+    /**
+     * Apply search of whether any row matches condition, it's compiled as {@code SELECT 1 ... LIMIT 1}
+     * which stops at the first matching row and reads no column.
+     *
+     * @return true if any row matches condition
+     */
+    boolean applyExists();
+
     int applyCount();
 
+    /**
+     * Apply aggregate function on expression over rows matching condition, it's executed by SQLite
+     * and only the result is read as double, use {@link #applyAggregateAsLong(Aggregate, String)}
+     * for INTEGER result larger than 2^53.
+     *
+     * @param aggregate  aggregate function
+     * @param expression column name or expression to aggregate
+     * @return aggregated value, 0 if it's NULL (no row for SUM, AVG, MIN or MAX)
+     * @throws android.database.sqlite.SQLiteException if query fails, it's never reported as 0
+     */
+    double applyAggregate(Aggregate aggregate, String expression);
+
+    /**
+     * Apply aggregate function whose result is INTEGER, such as COUNT, or SUM, MIN and MAX of an
+     * INTEGER column, the result is read as long without the precision lost by double.
+     *
+     * @param aggregate  aggregate function
+     * @param expression column name or expression to aggregate
+     * @return aggregated value, 0 if it's NULL (no row for SUM, MIN or MAX)
+     * @throws android.database.sqlite.SQLiteException if result is not INTEGER or query fails
+     */
+    long applyAggregateAsLong(Aggregate aggregate, String expression);
+
+    double applySum(String expression);
+
+    long applySumAsLong(String expression);
+
+    double applyAvg(String expression);
+
+    double applyMin(String expression);
+
+    long applyMinAsLong(String expression);
+
+    double applyMax(String expression);
+
+    long applyMaxAsLong(String expression);
+
+    long applyCountDistinct(String expression);
+
+    /**
+     * Apply aggregate function on expression for every group of key with one GROUP BY query.
+     * Key must be INTEGER, {@link android.database.sqlite.SQLiteException} is thrown if a key
+     * of other type is read, or if GROUP BY or ORDER BY other than key was set on the builder.
+     *
+     * @param keyExpression column name or expression of integer group key
+     * @param aggregate     aggregate function
+     * @param expression    column name or expression to aggregate
+     * @return aggregated value of every group key
+     */
+    GroupedResult applyGroupedAggregate(String keyExpression, Aggregate aggregate, String expression);
+
     /**
      * Apply search and return cursor as result
      *
@@ -38,6 +97,29 @@ public interface BuilderSupport<T extends Query> {
      */
     List<T> applySearchAsList();
 
+    /**
+     * Apply search and return an iterator which reads one row at a time, close it if iteration
+     * stops before the end.
+     *
+     * @return iterator of result objects
+     */
+    CursorIterator<T> applySearchAsIterator();
+
+    /**
+     * Apply search and pass rows to callback one at a time, until the end or callback returns false.
+     *
+     * @return count of rows passed to callback
+     */
+    int applyForEach(RowCallback<T> callback);
+
+    /**
+     * Apply search of columns and return result stored by column, see {@link ColumnarResult}.
+     *
+     * @param columns names of columns or expressions to read
+     * @return result stored as primitive arrays and dictionary encoded text
+     */
+    ColumnarResult applySearchAsColumns(String... columns);
+
     /**
      * Apply search first row with condition
      *
@@ -0,0 +1,251 @@
+package com.feiyan.lightdao.conditionbuilder;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteException;
+
+import com.feiyan.lightdao.ColumnMeta;
+import com.feiyan.lightdao.EntityMeta;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Query result stored by column: every numeric column is one primitive array and every text
+ * column is dictionary encoded, no object is created per row. Column type is taken from the
+ * field type of class: long as long[], int/short/boolean as int[], double/float as double[] and
+ * String as {@link DictionaryColumn}; type of a column not mapped by class (an expression like
+ * count(*)) is taken from its value in the first row. NULL numeric value is read as 0.
+ *
+ * @author zhangfei
+ */
+public final class ColumnarResult {
+    private static final int TYPE_LONG = 0;
+    private static final int TYPE_INT = 1;
+    private static final int TYPE_DOUBLE = 2;
+    private static final int TYPE_STRING = 3;
+
+    private final String[] columnNames;
+    private final Object[] columns;
+    private final int rowCount;
+
+    private ColumnarResult(String[] columnNames, Object[] columns, int rowCount) {
+        this.columnNames = columnNames;
+        this.columns = columns;
+        this.rowCount = rowCount;
+    }
+
+    /**
+     * Read all rows of cursor, cursor is not closed.
+     *
+     * @param columnNames names of result columns
+     * @param meta        metadata of class which maps the columns
+     */
+    static ColumnarResult read(Cursor cursor, String[] columnNames, EntityMeta<?> meta) {
+        int rowCount = cursor.getCount();
+        int[] indexes = new int[columnNames.length];
+        int[] types = new int[columnNames.length];
+        Object[] columns = new Object[columnNames.length];
+        DictionaryColumn.Builder[] builders = new DictionaryColumn.Builder[columnNames.length];
+        boolean hasRow = cursor.moveToFirst();
+        for (int i = 0; i < columnNames.length; i++) {
+            indexes[i] = cursor.getColumnIndexOrThrow(columnNames[i]);
+            types[i] = getType(columnNames[i], meta, hasRow ? cursor.getType(indexes[i]) : Cursor.FIELD_TYPE_NULL);
+            switch (types[i]) {
+                case TYPE_LONG:
+                    columns[i] = new long[rowCount];
+                    break;
+                case TYPE_INT:
+                    columns[i] = new int[rowCount];
+                    break;
+                case TYPE_DOUBLE:
+                    columns[i] = new double[rowCount];
+                    break;
+                default:
+                    builders[i] = new DictionaryColumn.Builder(rowCount);
+                    break;
+            }
+        }
+
+        int row = 0;
+        if (hasRow) {
+            do {
+                for (int i = 0; i < columns.length; i++) {
+                    int index = indexes[i];
+                    switch (types[i]) {
+                        case TYPE_LONG:
+                            ((long[]) columns[i])[row] = cursor.getLong(index);
+                            break;
+                        case TYPE_INT:
+                            ((int[]) columns[i])[row] = cursor.getInt(index);
+                            break;
+                        case TYPE_DOUBLE:
+                            ((double[]) columns[i])[row] = cursor.getDouble(index);
+                            break;
+                        default:
+                            builders[i].add(cursor.getString(index));
+                            break;
+                    }
+                }
+                row++;
+            } while (cursor.moveToNext());
+        }
+
+        for (int i = 0; i < columns.length; i++) {
+            if (builders[i] != null) {
+                columns[i] = builders[i].build();
+            }
+        }
+        return new ColumnarResult(columnNames.clone(), columns, row);
+    }
+
+    private static int getType(String columnName, EntityMeta<?> meta, int cursorType) {
+        for (int i = 0; i < meta.getColumnCount(); i++) {
+            ColumnMeta column = meta.getColumn(i);
+            if (!column.getName().equals(columnName)) {
+                continue;
+            }
+
+            Class<?> type = column.getField().getType();
+            if (type == long.class || type == Long.class) {
+                return TYPE_LONG;
+            } else if (type == int.class || type == Integer.class || type == short.class
+                    || type == Short.class || type == boolean.class || type == Boolean.class) {
+                return TYPE_INT;
+            } else if (type == double.class || type == Double.class || type == float.class || type == Float.class) {
+                return TYPE_DOUBLE;
+            } else if (type == String.class) {
+                return TYPE_STRING;
+            }
+            throw new SQLiteException("Column [" + columnName + "] of type " + type.getSimpleName()
+                    + " is not supported in columnar result");
+        }
+
+        switch (cursorType) {
+            case Cursor.FIELD_TYPE_FLOAT:
+                return TYPE_DOUBLE;
+            case Cursor.FIELD_TYPE_STRING:
+                return TYPE_STRING;
+            case Cursor.FIELD_TYPE_BLOB:
+                throw new SQLiteException("BLOB column [" + columnName + "] is not supported in columnar result");
+            default:
+                return TYPE_LONG;
+        }
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public String[] getColumnNames() {
+        return columnNames.clone();
+    }
+
+    public long[] getLongColumn(String columnName) {
+        return (long[]) getColumn(columnName, TYPE_LONG);
+    }
+
+    public int[] getIntColumn(String columnName) {
+        return (int[]) getColumn(columnName, TYPE_INT);
+    }
+
+    public double[] getDoubleColumn(String columnName) {
+        return (double[]) getColumn(columnName, TYPE_DOUBLE);
+    }
+
+    public DictionaryColumn getStringColumn(String columnName) {
+        return (DictionaryColumn) getColumn(columnName, TYPE_STRING);
+    }
+
+    private Object getColumn(String columnName, int type) {
+        int index = Arrays.asList(columnNames).indexOf(columnName);
+        if (index < 0) {
+            throw new IllegalArgumentException("Column [" + columnName + "] is not in result");
+        }
+
+        Object column = columns[index];
+        boolean matched;
+        switch (type) {
+            case TYPE_LONG:
+                matched = column instanceof long[];
+                break;
+            case TYPE_INT:
+                matched = column instanceof int[];
+                break;
+            case TYPE_DOUBLE:
+                matched = column instanceof double[];
+                break;
+            default:
+                matched = column instanceof DictionaryColumn;
+                break;
+        }
+        if (!matched) {
+            throw new IllegalArgumentException("Column [" + columnName + "] is stored as "
+                    + column.getClass().getSimpleName());
+        }
+        return column;
+    }
+
+    /**
+     * Text column stored as distinct values and the code of every row, code is the index of
+     * value in dictionary and -1 means NULL.
+     */
+    public static final class DictionaryColumn {
+        private final String[] dictionary;
+        private final int[] codes;
+
+        private DictionaryColumn(String[] dictionary, int[] codes) {
+            this.dictionary = dictionary;
+            this.codes = codes;
+        }
+
+        public String[] getDictionary() {
+            return dictionary;
+        }
+
+        public int[] getCodes() {
+            return codes;
+        }
+
+        public int size() {
+            return codes.length;
+        }
+
+        public String get(int row) {
+            int code = codes[row];
+            return code >= 0 ? dictionary[code] : null;
+        }
+
+        static final class Builder {
+            private final Map<String, Integer> codeMap = new HashMap<>();
+            private final int[] codes;
+            private int size;
+
+            Builder(int rowCount) {
+                this.codes = new int[rowCount];
+            }
+
+            void add(String value) {
+                if (value == null) {
+                    codes[size++] = -1;
+                    return;
+                }
+
+                Integer code = codeMap.get(value);
+                if (code == null) {
+                    code = codeMap.size();
+                    codeMap.put(value, code);
+                }
+                codes[size++] = code;
+            }
+
+            DictionaryColumn build() {
+                String[] dictionary = new String[codeMap.size()];
+                for (Map.Entry<String, Integer> entry : codeMap.entrySet()) {
+                    dictionary[entry.getValue()] = entry.getKey();
+                }
+                return new DictionaryColumn(dictionary, size == codes.length ? codes : Arrays.copyOf(codes, size));
+            }
+        }
+    }
+}
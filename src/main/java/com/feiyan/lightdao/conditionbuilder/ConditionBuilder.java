@@ -6,14 +6,26 @@ import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteQueryBuilder;
+import android.database.sqlite.SQLiteStatement;
+import android.support.v4.util.LongSparseArray;
 import android.text.TextUtils;
 import android.util.Log;
 
+import com.feiyan.lightdao.ColumnMeta;
 import com.feiyan.lightdao.DBUtils;
 import com.feiyan.lightdao.Entity;
+import com.feiyan.lightdao.EntityCache;
+import com.feiyan.lightdao.EntityMeta;
+import com.feiyan.lightdao.EntityMeta.BindingPlan;
+import com.feiyan.lightdao.QueryPlanWatchdog;
 import com.feiyan.lightdao.ReflectTools;
+import com.feiyan.lightdao.ResultCache;
+import com.feiyan.lightdao.SQL;
+import com.feiyan.lightdao.SQLBuilder;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -23,12 +35,14 @@ import java.util.List;
  * @author zhangfei
  */
 public class ConditionBuilder<T extends Entity> implements BuilderSupport<T>{
+    private static final String[] EXISTS_COLUMNS = {"1"};
+
     private final SQLiteDatabase database;
 
     private Class<T> clazz;
     private String[] columns;
     private String whereClause;
-    private String[] whereArgs;
+    private Object[] whereArgs;
     private String groupBy;
     private String having;
     private String orderBy;
@@ -52,21 +66,23 @@ public class ConditionBuilder<T extends Entity> implements BuilderSupport<T>{
 
     public ConditionBuilder<T> withWhere(String whereClause, Object... whereArgs) {
         this.whereClause = whereClause;
-        this.whereArgs = new String[whereArgs.length];
+        this.whereArgs = new Object[whereArgs.length];
 
+        // arguments keep their own type and are bound natively, Boolean is bound as 1 or 0
         for (int i = 0; i < whereArgs.length; i++) {
             Object arg = whereArgs[i];
 
             if (arg instanceof String
                     || arg instanceof Integer
                     || arg instanceof Long
+                    || arg instanceof Short
                     || arg instanceof Float
-                    || arg instanceof Double) {
-                this.whereArgs[i] = arg.toString();
-            } else if (arg instanceof Boolean) {
-                this.whereArgs[i] = Boolean.valueOf(arg.toString()) ? "1" : "0";
+                    || arg instanceof Double
+                    || arg instanceof Boolean
+                    || arg instanceof byte[]) {
+                this.whereArgs[i] = arg;
             } else {
-                throw new SQLException(arg.toString() + " is not supported as where argument in SQLITE");
+                throw new SQLException(arg + " is not supported as where argument in SQLITE");
             }
         }
 
@@ -101,9 +117,119 @@ public class ConditionBuilder<T extends Entity> implements BuilderSupport<T>{
 
     public T applySearchById(long id) {
         this.whereClause = Entity._ID + "=?";
-        this.whereArgs = new String[]{String.valueOf(id)};
+        this.whereArgs = new Object[]{id};
+
+        // only records with all columns are cached
+        EntityCache cache = columns == null ? EntityCache.of(database, clazz) : null;
+        if (cache == null) {
+            return applySearchFirst();
+        }
 
-        return applySearchFirst();
+        T table = cache.get(clazz, id);
+        if (table == null) {
+            long version = cache.getVersion();
+            table = applySearchFirst();
+            if (table != null) {
+                cache.put(table, version);
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Apply search of records by ids with as few queries as possible: ids are queried in chunks of
+     * {@code _id IN (...)} as many as SQLite bind argument limit allows, records in entity cache
+     * are not queried. Condition set by {@link #withWhere(String, Object...)} is replaced as
+     * {@link #applySearchById(long)} does.
+     *
+     * @return records keyed by id, id not found is left out
+     */
+    public LongSparseArray<T> applySearchByIds(long... ids) {
+        LongSparseArray<T> result = new LongSparseArray<>(ids.length);
+        EntityCache cache = columns == null ? EntityCache.of(database, clazz) : null;
+        long version = 0;
+        long[] missingIds = ids;
+        if (cache != null) {
+            version = cache.getVersion();
+            missingIds = new long[ids.length];
+            int missingCount = 0;
+            for (long id : ids) {
+                T table = cache.get(clazz, id);
+                if (table != null) {
+                    result.put(id, table);
+                } else {
+                    missingIds[missingCount++] = id;
+                }
+            }
+            missingIds = Arrays.copyOf(missingIds, missingCount);
+        }
+
+        // id is the key of result, so it's always read
+        String[] queryColumns = columns;
+        if (queryColumns != null && !Arrays.asList(queryColumns).contains(Entity._ID)) {
+            queryColumns = Arrays.copyOf(columns, columns.length + 1);
+            queryColumns[columns.length] = Entity._ID;
+        }
+
+        String tableName = ReflectTools.getTableName(clazz);
+        String fullQuery = null;
+        int chunkSize = SQLBuilder.MAX_BIND_ARGS;
+        for (int start = 0; start < missingIds.length; start += chunkSize) {
+            int size = Math.min(chunkSize, missingIds.length - start);
+            String query = size == chunkSize ? fullQuery : null;
+            if (query == null) {
+                query = SQLiteQueryBuilder.buildQueryString(false, tableName, queryColumns,
+                        buildIdInPredicate(size), null, null, null, null);
+                // the same text is used for every full chunk, so that compiled statement is reused
+                if (size == chunkSize) {
+                    fullQuery = query;
+                }
+            }
+
+            Object[] args = new Object[size];
+            for (int i = 0; i < size; i++) {
+                args[i] = missingIds[start + i];
+            }
+
+            Cursor c = new SQL(query, args).rawQuery(database);
+            try {
+                BindingPlan<T> plan = ReflectTools.getEntityMeta(clazz).newBindingPlan(c, queryColumns);
+                while (c.moveToNext()) {
+                    T table = plan.read(c);
+                    result.put(table.id, table);
+                    if (cache != null) {
+                        cache.put(table, version);
+                    }
+                }
+            } catch (SQLiteException e) {
+                Log.e(DBUtils.TAG, "applySearchByIds() error: " + DBUtils.getTraceInfo(e));
+                return result;
+            } finally {
+                c.close();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Apply search of whether any row matches condition, it's compiled as {@code SELECT 1 ... LIMIT 1}
+     * which stops at the first matching row and reads no column.
+     *
+     * @return true if any row matches condition
+     */
+    public boolean applyExists() {
+        String query = SQLiteQueryBuilder.buildQueryString(
+                false, ReflectTools.getTableName(clazz), EXISTS_COLUMNS, whereClause,
+                groupBy, having, null, "1");
+        Cursor c = new SQL(query, whereArgs).rawQuery(database);
+        try {
+            return c.moveToFirst();
+        } catch (SQLiteException e) {
+            Log.e(DBUtils.TAG, "applyExists() error: " + DBUtils.getTraceInfo(e));
+            return false;
+        } finally {
+            c.close();
+        }
     }
 
     public int applyCount() {
@@ -128,26 +254,211 @@ public class ConditionBuilder<T extends Entity> implements BuilderSupport<T>{
         }
     }
 
+    /**
+     * Apply aggregate function on expression over rows matching condition, it's executed by SQLite
+     * and only the result is read as double, use {@link #applyAggregateAsLong(Aggregate, String)}
+     * for INTEGER result larger than 2^53.
+     *
+     * @param aggregate  aggregate function
+     * @param expression column name or expression to aggregate
+     * @return aggregated value, 0 if it's NULL (no row for SUM, AVG, MIN or MAX)
+     * @throws SQLiteException if query fails, it's never reported as 0
+     */
+    public double applyAggregate(Aggregate aggregate, String expression) {
+        this.columns = new String[]{aggregate.toSql(expression)};
+
+        Cursor c = applySearch();
+        try {
+            return c.moveToFirst() ? c.getDouble(0) : 0;
+        } finally {
+            c.close();
+        }
+    }
+
+    /**
+     * Apply aggregate function whose result is INTEGER, such as COUNT, or SUM, MIN and MAX of an
+     * INTEGER column, the result is read as long without the precision lost by double.
+     *
+     * @param aggregate  aggregate function
+     * @param expression column name or expression to aggregate
+     * @return aggregated value, 0 if it's NULL (no row for SUM, MIN or MAX)
+     * @throws SQLiteException if result is not INTEGER or query fails
+     */
+    public long applyAggregateAsLong(Aggregate aggregate, String expression) {
+        this.columns = new String[]{aggregate.toSql(expression)};
+
+        Cursor c = applySearch();
+        try {
+            return c.moveToFirst() ? Aggregate.readLong(c, 0, columns[0]) : 0;
+        } finally {
+            c.close();
+        }
+    }
+
+    public double applySum(String expression) {
+        return applyAggregate(Aggregate.SUM, expression);
+    }
+
+    public long applySumAsLong(String expression) {
+        return applyAggregateAsLong(Aggregate.SUM, expression);
+    }
+
+    public double applyAvg(String expression) {
+        return applyAggregate(Aggregate.AVG, expression);
+    }
+
+    public double applyMin(String expression) {
+        return applyAggregate(Aggregate.MIN, expression);
+    }
+
+    public long applyMinAsLong(String expression) {
+        return applyAggregateAsLong(Aggregate.MIN, expression);
+    }
+
+    public double applyMax(String expression) {
+        return applyAggregate(Aggregate.MAX, expression);
+    }
+
+    public long applyMaxAsLong(String expression) {
+        return applyAggregateAsLong(Aggregate.MAX, expression);
+    }
+
+    public long applyCountDistinct(String expression) {
+        return applyAggregateAsLong(Aggregate.COUNT_DISTINCT, expression);
+    }
+
+    /**
+     * Apply aggregate function on expression for every group of key with one GROUP BY query.
+     * Key must be INTEGER, {@link android.database.sqlite.SQLiteException} is thrown if a key
+     * of other type is read, or if GROUP BY or ORDER BY other than key was set on the builder.
+     *
+     * @param keyExpression column name or expression of integer group key
+     * @param aggregate     aggregate function
+     * @param expression    column name or expression to aggregate
+     * @return aggregated value of every group key
+     */
+    public GroupedResult applyGroupedAggregate(String keyExpression, Aggregate aggregate, String expression) {
+        GroupedResult.checkClauses(keyExpression, groupBy, orderBy);
+        this.columns = new String[]{keyExpression, aggregate.toSql(expression)};
+        this.groupBy = keyExpression;
+        this.orderBy = keyExpression;
+
+        Cursor c = applySearch();
+        try {
+            return GroupedResult.read(c, keyExpression);
+        } finally {
+            c.close();
+        }
+    }
+
     /**
      * Apply search and return cursor as result
      *
      * @return query cursor
      */
     public Cursor applySearch() {
-        String limit = null;
-        if (limitOffset != null && limitSize != null) {
-            limit = limitOffset + "," + limitSize;
+        return buildSearchSQL().rawQuery(database);
+    }
+
+    private SQL buildSearchSQL() {
+        // limit values are bound too, so that query text is the same for every page
+        boolean limit = limitOffset != null && limitSize != null;
+        QueryShapeCache.Shape shape = new QueryShapeCache.Shape(
+                clazz, columns, whereClause, groupBy, having, orderBy, distinct, limit);
+        String query = QueryShapeCache.get(shape);
+        if (query == null) {
+            String order = !TextUtils.isEmpty(orderBy) ? orderBy : ReflectTools.getDefaultOrderBy(clazz);
+            String tableName = ReflectTools.getTableName(clazz);
+            query = SQLiteQueryBuilder.buildQueryString(
+                    distinct, tableName, columns, whereClause,
+                    groupBy, having, order, null);
+            if (limit) {
+                query += " LIMIT ?,?";
+            }
+            QueryShapeCache.put(shape, query);
         }
 
-        if (TextUtils.isEmpty(orderBy)) {
-            orderBy = ReflectTools.getDefaultOrderBy(clazz);
+        Object[] args = limit ? appendLimitArgs(whereArgs) : whereArgs;
+        SQL sql = new SQL(query, args);
+        QueryPlanWatchdog.check(database, sql);
+        return sql;
+    }
+
+    private Object[] appendLimitArgs(Object[] args) {
+        int length = args != null ? args.length : 0;
+        Object[] result = new Object[length + 2];
+        if (length > 0) {
+            System.arraycopy(args, 0, result, 0, length);
+        }
+        result[length] = limitOffset;
+        result[length + 1] = limitSize;
+        return result;
+    }
+
+    /**
+     * Apply search of one page with keyset pagination: sort keys are taken from
+     * {@link #withOrderBy(String)} or {@link com.feiyan.lightdao.annotation.OrderBy} of table class,
+     * with {@link Entity#_ID} appended as the last key, and the next page seeks to rows after the
+     * last row of this page instead of skipping rows with offset, so every page costs the same.
+     * Sort keys must be plain not null columns, {@link #withLimit(int, int)} is ignored.
+     *
+     * @param pageSize          max count of rows in page
+     * @param continuationToken {@link Page#getNextToken()} of previous page, null for the first page
+     * @return page of table class object
+     */
+    public Page<T> applySearchPage(int pageSize, String continuationToken) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("page size must be positive");
+        }
+
+        String order = !TextUtils.isEmpty(orderBy) ? orderBy : ReflectTools.getDefaultOrderBy(clazz);
+        Keyset keyset = Keyset.parse(order);
+
+        List<Object> args = new ArrayList<>();
+        if (whereArgs != null) {
+            Collections.addAll(args, whereArgs);
+        }
+        String where = whereClause;
+        if (continuationToken != null) {
+            String predicate = keyset.buildPredicate(keyset.decodeToken(continuationToken), args);
+            where = TextUtils.isEmpty(where) ? predicate : "(" + where + ") AND " + predicate;
+        }
+
+        // sort keys are read from result to build the token
+        String[] queryColumns = columns;
+        if (queryColumns != null && queryColumns.length > 0) {
+            List<String> columnList = new ArrayList<>();
+            Collections.addAll(columnList, queryColumns);
+            for (String name : keyset.getNames()) {
+                if (!columnList.contains(name)) {
+                    columnList.add(name);
+                }
+            }
+            queryColumns = columnList.toArray(new String[columnList.size()]);
         }
 
-        String tableName = ReflectTools.getTableName(clazz);
         String query = SQLiteQueryBuilder.buildQueryString(
-                distinct, tableName, columns, whereClause,
-                groupBy, having, orderBy, limit);
-        return database.rawQuery(query, whereArgs);
+                distinct, ReflectTools.getTableName(clazz), queryColumns, where,
+                groupBy, having, keyset.buildOrderBy(), null) + " LIMIT ?";
+        // one more row tells whether there is a next page
+        args.add(pageSize + 1);
+
+        Cursor c = new SQL(query, args.toArray()).rawQuery(database);
+        List<T> entities = new ArrayList<>();
+        String nextToken = null;
+        try {
+            BindingPlan<T> plan = ReflectTools.getEntityMeta(clazz).newBindingPlan(c, columns);
+            while (entities.size() < pageSize && c.moveToNext()) {
+                entities.add(plan.read(c));
+            }
+            if (entities.size() == pageSize) {
+                String token = keyset.encodeToken(c);
+                nextToken = c.moveToNext() ? token : null;
+            }
+        } finally {
+            c.close();
+        }
+        return new Page<>(entities, nextToken);
     }
 
     /**
@@ -156,14 +467,25 @@ public class ConditionBuilder<T extends Entity> implements BuilderSupport<T>{
      * @return list of table class object as result
      */
     public List<T> applySearchAsList() {
-        Cursor c = applySearch();
+        SQL sql = buildSearchSQL();
+        ResultCache cache = ResultCache.getInstance();
+        String[] tableNames = null;
+        long[] versions = null;
+        if (cache != null) {
+            List<T> cached = cache.get(database, clazz, sql);
+            if (cached != null) {
+                return cached;
+            }
+            tableNames = new String[]{ReflectTools.getTableName(clazz)};
+            versions = ResultCache.getVersions(database, tableNames);
+        }
+
+        Cursor c = sql.rawQuery(database);
         List<T> entities = new ArrayList<>();
         try {
+            BindingPlan<T> plan = ReflectTools.getEntityMeta(clazz).newBindingPlan(c, columns);
             while (c.moveToNext()) {
-                T table = getContent(c, clazz);
-                if (table != null) {
-                    entities.add(table);
-                }
+                entities.add(plan.read(c));
             }
         } catch (SQLiteException e) {
             Log.e(DBUtils.TAG, "applySearchAsList() error: " + DBUtils.getTraceInfo(e));
@@ -171,9 +493,72 @@ public class ConditionBuilder<T extends Entity> implements BuilderSupport<T>{
         } finally {
             c.close();
         }
+
+        if (cache != null) {
+            cache.put(database, clazz, sql, tableNames, versions, entities);
+        }
         return entities;
     }
 
+    /**
+     * Apply search and return an iterator which reads one row at a time, close it if iteration
+     * stops before the end.
+     *
+     * @return iterator of table class object
+     */
+    public CursorIterator<T> applySearchAsIterator() {
+        Cursor c = applySearch();
+        try {
+            return new CursorIterator<>(c, ReflectTools.getEntityMeta(clazz).newBindingPlan(c, columns));
+        } catch (RuntimeException e) {
+            c.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Apply search and pass rows to callback one at a time, until the end or callback returns false.
+     *
+     * @return count of rows passed to callback
+     */
+    public int applyForEach(RowCallback<T> callback) {
+        CursorIterator<T> iterator = applySearchAsIterator();
+        int count = 0;
+        try {
+            while (iterator.hasNext()) {
+                count++;
+                if (!callback.onRow(iterator.next())) {
+                    break;
+                }
+            }
+        } catch (SQLiteException e) {
+            Log.e(DBUtils.TAG, "applyForEach() error: " + DBUtils.getTraceInfo(e));
+        } finally {
+            iterator.close();
+        }
+        return count;
+    }
+
+    /**
+     * Apply search of columns and return result stored by column, see {@link ColumnarResult}.
+     *
+     * @param columns names of columns or expressions to read
+     * @return result stored as primitive arrays and dictionary encoded text
+     */
+    public ColumnarResult applySearchAsColumns(String... columns) {
+        if (columns == null || columns.length == 0) {
+            throw new IllegalArgumentException("columns to read cannot be empty");
+        }
+
+        this.columns = columns;
+        Cursor c = applySearch();
+        try {
+            return ColumnarResult.read(c, columns, ReflectTools.getEntityMeta(clazz));
+        } finally {
+            c.close();
+        }
+    }
+
     /**
      * Apply search first row with condition
      *
@@ -188,7 +573,7 @@ public class ConditionBuilder<T extends Entity> implements BuilderSupport<T>{
 
         try {
             if (c.moveToFirst()) {
-                return getContent(c, clazz);
+                return ReflectTools.getEntityMeta(clazz).newBindingPlan(c, columns).read(c);
             } else {
                 return null;
             }
@@ -200,28 +585,21 @@ public class ConditionBuilder<T extends Entity> implements BuilderSupport<T>{
         }
     }
 
-    private T getContent(Cursor cursor, Class<T> tableClass) {
-        try {
-            T content = tableClass.newInstance();
-            content.id = cursor.getLong(0);
-            content.restore(cursor, columns);
-            return content;
-        } catch (IllegalAccessException e) {
-            Log.e(DBUtils.TAG, "getContent() error: " + DBUtils.getTraceInfo(e));
-        } catch (InstantiationException e) {
-            Log.e(DBUtils.TAG, "getContent() error: " + DBUtils.getTraceInfo(e));
-        }
-        return null;
-    }
-
     /**
      * Apply delete with condition
      *
      * @return count of delete rows
      */
     public int applyDelete() {
+        int count = delete();
+        EntityCache.invalidate(database, clazz);
+        ResultCache.invalidate(database, clazz);
+        return count;
+    }
+
+    private int delete() {
         String tableName = ReflectTools.getTableName(clazz);
-        int count = database.delete(tableName, whereClause, whereArgs);
+        int count = SQLBuilder.buildDeleteSQL(clazz, whereClause, whereArgs).executeUpdateDelete(database);
         if (TextUtils.isEmpty(whereClause)) {
             resetPrimaryKeyIfNeed(tableName);
         }
@@ -250,9 +628,117 @@ public class ConditionBuilder<T extends Entity> implements BuilderSupport<T>{
         }
 
         this.whereClause = Entity._ID + " = ?";
-        this.whereArgs = new String[]{String.valueOf(id)};
+        this.whereArgs = new Object[]{id};
+
+        int count = delete();
+        EntityCache.invalidate(database, clazz, id);
+        ResultCache.invalidate(database, clazz);
+        return count;
+    }
+
+    /**
+     * Apply delete of records with ids, ids are split into {@code _id IN (?,...)} chunks under
+     * the SQLite bind argument limit and deleted in one transaction.
+     *
+     * @param ids primary key ids of records
+     * @return count of deleted rows
+     */
+    public int applyDeleteByIds(long... ids) {
+        if (ids == null || ids.length == 0) {
+            return 0;
+        }
+
+        SQL sql = SQLBuilder.buildDeleteSQL(clazz, null);
+        return executeByIds("applyDeleteByIds()", sql, ids);
+    }
+
+    /**
+     * Apply update of records with ids, ids are split into {@code _id IN (?,...)} chunks under
+     * the SQLite bind argument limit and updated in one transaction.
+     *
+     * @param values content values to be updated, fewer than {@link SQLBuilder#MAX_BIND_ARGS}
+     *               so that every chunk binds at least one id
+     * @param ids    primary key ids of records
+     * @return count of updated rows
+     * @throws SQLiteException if values leave no bind argument for ids
+     */
+    public int applyUpdateByIds(ContentValues values, long... ids) {
+        if (values == null || values.size() == 0) {
+            throw new SQLiteException("ContentValues is empty, nothing can be updated");
+        }
+        if (ids == null || ids.length == 0) {
+            return 0;
+        }
 
-        return applyDelete();
+        SQL sql = SQLBuilder.buildUpdateSQL(clazz, values, null);
+        return executeByIds("applyUpdateByIds()", sql, ids);
+    }
+
+    /**
+     * Execute sql with a WHERE clause of id chunks appended, chunks of the same size share one
+     * compiled statement.
+     *
+     * @param sql statement without WHERE clause, its bind arguments are bound before ids
+     */
+    private int executeByIds(String method, SQL sql, long[] ids) {
+        int leadingCount = sql.getBindArgCount();
+        int chunkSize = SQLBuilder.MAX_BIND_ARGS - leadingCount;
+        if (chunkSize <= 0) {
+            throw new SQLiteException(method + " binds " + leadingCount + " values, no room is left for ids under "
+                    + "the limit of " + SQLBuilder.MAX_BIND_ARGS + " bind arguments");
+        }
+        SQLiteStatement fullStatement = null;
+        SQLiteStatement remainderStatement = null;
+        int count = 0;
+        try {
+            database.beginTransaction();
+            for (int start = 0; start < ids.length; start += chunkSize) {
+                int size = Math.min(chunkSize, ids.length - start);
+                SQLiteStatement statement;
+                if (size == chunkSize) {
+                    if (fullStatement == null) {
+                        fullStatement = database.compileStatement(sql.getSql() + buildIdInClause(size));
+                    }
+                    statement = fullStatement;
+                } else {
+                    remainderStatement = database.compileStatement(sql.getSql() + buildIdInClause(size));
+                    statement = remainderStatement;
+                }
+
+                sql.bindTo(statement);
+                for (int i = 0; i < size; i++) {
+                    statement.bindLong(leadingCount + i + 1, ids[start + i]);
+                }
+                count += statement.executeUpdateDelete();
+            }
+            database.setTransactionSuccessful();
+            return count;
+        } catch (SQLiteException e) {
+            Log.e(DBUtils.TAG, method + " error: " + DBUtils.getTraceInfo(e));
+            return 0;
+        } finally {
+            if (fullStatement != null) {
+                fullStatement.close();
+            }
+            if (remainderStatement != null) {
+                remainderStatement.close();
+            }
+            database.endTransaction();
+            EntityCache.invalidate(database, clazz, ids);
+            ResultCache.invalidate(database, clazz);
+        }
+    }
+
+    private static String buildIdInClause(int count) {
+        return " WHERE " + buildIdInPredicate(count);
+    }
+
+    private static String buildIdInPredicate(int count) {
+        StringBuilder buffer = new StringBuilder(Entity._ID).append(" IN (");
+        for (int i = 0; i < count; i++) {
+            buffer.append(i == 0 ? "?" : ",?");
+        }
+        return buffer.append(')').toString();
     }
 
     /**
@@ -266,10 +752,15 @@ public class ConditionBuilder<T extends Entity> implements BuilderSupport<T>{
             throw new SQLiteException("ContentValues is empty, nothing can be updated");
         }
 
-        String tableName = ReflectTools.getTableName(clazz);
+        int count = update(values);
+        EntityCache.invalidate(database, clazz);
+        ResultCache.invalidate(database, clazz);
+        return count;
+    }
 
+    private int update(ContentValues values) {
         try {
-            return database.update(tableName, values, whereClause, whereArgs);
+            return SQLBuilder.buildUpdateSQL(clazz, values, whereClause, whereArgs).executeUpdateDelete(database);
         } catch (SQLiteException e) {
             Log.e(DBUtils.TAG, "applyUpdate() error: " + DBUtils.getTraceInfo(e));
             return 0;
@@ -277,7 +768,8 @@ public class ConditionBuilder<T extends Entity> implements BuilderSupport<T>{
     }
 
     /**
-     * Apply update with table object
+     * Apply update with table object, only columns changed since it was loaded are updated and
+     * no statement is executed if nothing changed, see {@link Entity#toChangedValues()}.
      *
      * @param table table object to update
      * @return count of updated row
@@ -287,10 +779,184 @@ public class ConditionBuilder<T extends Entity> implements BuilderSupport<T>{
             throw new SQLException("table to update cannot be null");
         }
 
+        ContentValues values = table.toChangedValues();
+        if (values.size() == 0) {
+            return 0;
+        }
+
         this.whereClause = Entity._ID + " = ?";
-        this.whereArgs = new String[]{String.valueOf(table.id)};
-        ContentValues values = table.toContentValues();
-        return applyUpdate(values);
+        this.whereArgs = new Object[]{table.id};
+        int count = update(values);
+        EntityCache.invalidate(database, clazz, table.id);
+        ResultCache.invalidate(database, clazz);
+        if (count > 0) {
+            table.clearChanges();
+        }
+        return count;
+    }
+
+    /**
+     * Apply insert or update of records in one transaction, a record which conflicts with an existing
+     * row on {@link SQLBuilder#getUpsertConflictColumn(Class)} updates that row, others are inserted.
+     * Primary key of the existing row is kept and written back into the record, so is the generated
+     * one of an inserted row.
+     * <p>
+     * A saved record (id is set) is matched by its id first, so that changing its unique column
+     * updates its own row. If the new value belongs to another row, the unique constraint fails and
+     * the whole transaction is rolled back.
+     *
+     * @param tables records to insert or update
+     * @return count of inserted or updated records
+     */
+    public int applyUpsert(List<T> tables) {
+        if (tables == null || tables.isEmpty()) {
+            return 0;
+        }
+
+        EntityMeta<T> meta = ReflectTools.getEntityMeta(clazz);
+        String conflictColumn = SQLBuilder.getUpsertConflictColumn(clazz);
+        boolean conflictOnId = Entity._ID.equals(conflictColumn);
+        int idPosition = 0;
+        int conflictIndex = 0;
+        // bind positions of upsert (or insert), update and id lookup statements, indexed by meta
+        // columns, which follow the order of generated mapper
+        int[] bindIndexes = new int[meta.getColumnCount()];
+        int[] conflictBindIndexes = new int[meta.getColumnCount()];
+        for (int i = 0; i < bindIndexes.length; i++) {
+            ColumnMeta column = meta.getColumn(i);
+            bindIndexes[i] = i + 1;
+            if (column.isId()) {
+                idPosition = i + 1;
+            }
+            if (column.getName().equals(conflictColumn)) {
+                conflictIndex = i;
+                conflictBindIndexes[i] = 1;
+            }
+        }
+        int[] updateBindIndexes = getUpdateBindIndexes(meta, conflictColumn);
+        int[] idUpdateBindIndexes = getUpdateBindIndexes(meta, Entity._ID);
+
+        long[] originalIds = new long[tables.size()];
+        int index = 0;
+        SQLiteStatement statement = null;
+        SQLiteStatement updateStatement = null;
+        SQLiteStatement idUpdateStatement = null;
+        SQLiteStatement idStatement = null;
+        try {
+            database.beginTransaction();
+            statement = database.compileStatement(SQLBuilder.buildUpsertSQL(clazz).getSql());
+            if (!SQLBuilder.isUpsertSupported()) {
+                updateStatement = database.compileStatement(SQLBuilder.buildUpsertUpdateSQL(clazz).getSql());
+            }
+            if (!conflictOnId) {
+                idUpdateStatement = database.compileStatement(
+                        SQLBuilder.buildUpsertUpdateSQL(clazz, Entity._ID).getSql());
+                idStatement = database.compileStatement("SELECT " + Entity._ID + " FROM "
+                        + ReflectTools.getTableName(clazz) + " WHERE " + conflictColumn + "=?");
+            }
+
+            for (T table : tables) {
+                originalIds[index++] = table.id;
+                boolean newRecord = table.id == Entity.NOT_SAVED;
+                // null never conflicts, neither does a record without id when conflict target is _id
+                boolean mayConflict = conflictOnId
+                        ? !newRecord
+                        : meta.getColumn(conflictIndex).getValue(table) != null;
+
+                // a saved record updates its own row even if its unique column is changed, which
+                // would hit PRIMARY KEY instead of the conflict target when inserted
+                boolean updatedById = false;
+                if (idUpdateStatement != null && !newRecord) {
+                    idUpdateStatement.clearBindings();
+                    meta.bind(table, idUpdateStatement, idUpdateBindIndexes);
+                    updatedById = idUpdateStatement.executeUpdateDelete() > 0;
+                }
+
+                boolean updated = updatedById;
+                if (!updated && updateStatement != null && mayConflict) {
+                    updateStatement.clearBindings();
+                    meta.bind(table, updateStatement, updateBindIndexes);
+                    updated = updateStatement.executeUpdateDelete() > 0;
+                }
+
+                long rowId = -1;
+                if (!updated) {
+                    statement.clearBindings();
+                    meta.bind(table, statement, bindIndexes);
+                    if (newRecord && idPosition > 0) {
+                        // null primary key will be generated by auto increment
+                        statement.bindNull(idPosition);
+                    }
+                    rowId = statement.executeInsert();
+                }
+
+                if (!updatedById && idStatement != null && mayConflict) {
+                    // the row may be an existing one, last inserted row id doesn't tell
+                    idStatement.clearBindings();
+                    meta.bind(table, idStatement, conflictBindIndexes);
+                    table.id = idStatement.simpleQueryForLong();
+                } else if (newRecord && rowId != -1) {
+                    table.id = rowId;
+                }
+            }
+            database.setTransactionSuccessful();
+            return tables.size();
+        } catch (SQLiteException e) {
+            Log.e(DBUtils.TAG, "applyUpsert() error: " + DBUtils.getTraceInfo(e));
+
+            // transaction is rolled back, so are the written back ids
+            for (int i = 0; i < index; i++) {
+                tables.get(i).id = originalIds[i];
+            }
+            return 0;
+        } finally {
+            if (statement != null) {
+                statement.close();
+            }
+            if (updateStatement != null) {
+                updateStatement.close();
+            }
+            if (idUpdateStatement != null) {
+                idUpdateStatement.close();
+            }
+            if (idStatement != null) {
+                idStatement.close();
+            }
+            database.endTransaction();
+            // replaced rows may be found by unique column, their ids are unknown
+            EntityCache.invalidate(database, clazz);
+            ResultCache.invalidate(database, clazz);
+        }
+    }
+
+    /**
+     * @return bind positions of {@link SQLBuilder#buildUpsertUpdateSQL(Class, String)}: columns
+     * except _id and key column in order, then key column
+     */
+    private static <T extends Entity> int[] getUpdateBindIndexes(EntityMeta<T> meta, String keyColumn) {
+        int[] bindIndexes = new int[meta.getColumnCount()];
+        int keyIndex = 0;
+        int position = 0;
+        for (int i = 0; i < bindIndexes.length; i++) {
+            ColumnMeta column = meta.getColumn(i);
+            if (column.getName().equals(keyColumn)) {
+                keyIndex = i;
+            } else if (!column.isId()) {
+                bindIndexes[i] = ++position;
+            }
+        }
+        bindIndexes[keyIndex] = position + 1;
+        return bindIndexes;
+    }
+
+    /**
+     * Apply insert or update of one record, see {@link #applyUpsert(List)}
+     *
+     * @param table record to insert or update
+     * @return count of inserted or updated records
+     */
+    public int applyUpsert(T table) {
+        return applyUpsert(Collections.singletonList(table));
     }
 
     /**
@@ -0,0 +1,62 @@
+package com.feiyan.lightdao.conditionbuilder;
+
+import android.database.Cursor;
+
+import com.feiyan.lightdao.EntityMeta.BindingPlan;
+import com.feiyan.lightdao.Query;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterator over query result which reads one row at a time from cursor, so that large result
+ * never needs to be held in memory. Cursor is closed when iteration reaches the end, call
+ * {@link #close()} if iteration stops before that.
+ *
+ * @author zhangfei
+ */
+public final class CursorIterator<T extends Query> implements Iterator<T>, Closeable {
+    private final Cursor cursor;
+    private final BindingPlan<T> plan;
+    private boolean hasNext;
+    private boolean moved;
+
+    CursorIterator(Cursor cursor, BindingPlan<T> plan) {
+        this.cursor = cursor;
+        this.plan = plan;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (!moved) {
+            hasNext = !cursor.isClosed() && cursor.moveToNext();
+            moved = true;
+            if (!hasNext) {
+                close();
+            }
+        }
+        return hasNext;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        moved = false;
+        return plan.read(cursor);
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("remove");
+    }
+
+    @Override
+    public void close() {
+        if (!cursor.isClosed()) {
+            cursor.close();
+        }
+    }
+}
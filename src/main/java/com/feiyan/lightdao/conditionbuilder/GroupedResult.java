@@ -0,0 +1,161 @@
+package com.feiyan.lightdao.conditionbuilder;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteException;
+import android.text.TextUtils;
+
+import java.util.Arrays;
+
+/**
+ * Result of grouped aggregation as a map from integer group key to aggregated value, stored as
+ * two primitive arrays sorted by key, see
+ * {@link BuilderSupport#applyGroupedAggregate(String, Aggregate, String)}.
+ *
+ * @author zhangfei
+ */
+public final class GroupedResult {
+    private final long[] keys;
+    private final double[] values;
+    /** values read by getLong, null if any value is not INTEGER or NULL */
+    private final long[] longValues;
+    private final String valueName;
+
+    private GroupedResult(long[] keys, double[] values, long[] longValues, String valueName) {
+        this.keys = keys;
+        this.values = values;
+        this.longValues = longValues;
+        this.valueName = valueName;
+    }
+
+    /**
+     * Check GROUP BY and ORDER BY set on builder before grouped aggregation, they must be empty
+     * or the key itself, since rows are grouped and ordered by key.
+     */
+    static void checkClauses(String keyExpression, String groupBy, String orderBy) {
+        if (!TextUtils.isEmpty(groupBy) && !groupBy.trim().equals(keyExpression)) {
+            throw new SQLiteException("Grouped aggregate is grouped by key [" + keyExpression
+                    + "], GROUP BY [" + groupBy + "] cannot be used with it");
+        }
+        if (!TextUtils.isEmpty(orderBy) && !orderBy.trim().equals(keyExpression)) {
+            throw new SQLiteException("Grouped aggregate is ordered by key [" + keyExpression
+                    + "], ORDER BY [" + orderBy + "] cannot be used with it");
+        }
+    }
+
+    /**
+     * Read rows of key at column 0 and value at column 1, rows must be ordered by key and
+     * row of NULL key is left out, cursor is not closed. Key must be INTEGER: TEXT or REAL
+     * keys would be truncated to the same long or ordered differently from it. INTEGER values
+     * are also kept as long, which double cannot hold exactly above 2^53.
+     */
+    static GroupedResult read(Cursor cursor, String keyExpression) {
+        int count = cursor.getCount();
+        long[] keys = new long[count];
+        double[] values = new double[count];
+        long[] longValues = new long[count];
+        int size = 0;
+        while (cursor.moveToNext()) {
+            int type = cursor.getType(0);
+            if (type == Cursor.FIELD_TYPE_NULL) {
+                continue;
+            }
+            if (type != Cursor.FIELD_TYPE_INTEGER) {
+                throw new SQLiteException("Group key [" + keyExpression + "] must be INTEGER, but value ["
+                        + cursor.getString(0) + "] is not");
+            }
+            keys[size] = cursor.getLong(0);
+            values[size] = cursor.getDouble(1);
+            if (longValues != null) {
+                int valueType = cursor.getType(1);
+                if (valueType == Cursor.FIELD_TYPE_INTEGER) {
+                    longValues[size] = cursor.getLong(1);
+                } else if (valueType != Cursor.FIELD_TYPE_NULL) {
+                    longValues = null;
+                }
+            }
+            size++;
+        }
+
+        if (size < count) {
+            keys = Arrays.copyOf(keys, size);
+            values = Arrays.copyOf(values, size);
+            if (longValues != null) {
+                longValues = Arrays.copyOf(longValues, size);
+            }
+        }
+        return new GroupedResult(keys, values, longValues, cursor.getColumnName(1));
+    }
+
+    public int size() {
+        return keys.length;
+    }
+
+    public long keyAt(int index) {
+        return keys[index];
+    }
+
+    public double valueAt(int index) {
+        return values[index];
+    }
+
+    /**
+     * @throws SQLiteException if aggregated values are not all INTEGER
+     */
+    public long longValueAt(int index) {
+        return checkLongValues()[index];
+    }
+
+    /**
+     * @return value of group key, or defaultValue if there is no such group
+     */
+    public double get(long key, double defaultValue) {
+        int index = Arrays.binarySearch(keys, key);
+        return index >= 0 ? values[index] : defaultValue;
+    }
+
+    /**
+     * Same as {@link #get(long, double)} for INTEGER result, such as COUNT, or SUM, MIN and MAX
+     * of an INTEGER column, without the precision lost by double.
+     *
+     * @return value of group key, or defaultValue if there is no such group
+     * @throws SQLiteException if aggregated values are not all INTEGER
+     */
+    public long getLong(long key, long defaultValue) {
+        long[] longValues = checkLongValues();
+        int index = Arrays.binarySearch(keys, key);
+        return index >= 0 ? longValues[index] : defaultValue;
+    }
+
+    public boolean containsKey(long key) {
+        return Arrays.binarySearch(keys, key) >= 0;
+    }
+
+    /**
+     * @return group keys in ascending order
+     */
+    public long[] getKeys() {
+        return keys.clone();
+    }
+
+    /**
+     * @return aggregated values in the same order as {@link #getKeys()}
+     */
+    public double[] getValues() {
+        return values.clone();
+    }
+
+    /**
+     * @return aggregated values as long in the same order as {@link #getKeys()}
+     * @throws SQLiteException if aggregated values are not all INTEGER
+     */
+    public long[] getLongValues() {
+        return checkLongValues().clone();
+    }
+
+    private long[] checkLongValues() {
+        if (longValues == null) {
+            throw new SQLiteException("Result of [" + valueName + "] is not all INTEGER, read it as double");
+        }
+        return longValues;
+    }
+}
@@ -0,0 +1,177 @@
+package com.feiyan.lightdao.conditionbuilder;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteException;
+import android.os.Build;
+import android.text.TextUtils;
+import android.util.Base64;
+
+import com.feiyan.lightdao.Entity;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sort keys of keyset pagination parsed from ORDER BY clause, {@link Entity#_ID} is appended as
+ * the last key if missing so that every row has a unique position. It builds the predicate
+ * which seeks to rows after a position and the continuation token which stores a position.
+ *
+ * @author zhangfei
+ */
+final class Keyset {
+    // row values like (a,b) > (?,?) are supported since SQLite 3.15
+    private static final int SDK_VERSION_ROW_VALUES = 26;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final String[] names;
+    private final boolean[] descending;
+
+    private Keyset(String[] names, boolean[] descending) {
+        this.names = names;
+        this.descending = descending;
+    }
+
+    /**
+     * @param orderBy comma separated terms of column name and optional ASC or DESC
+     */
+    static Keyset parse(String orderBy) {
+        List<String> names = new ArrayList<>();
+        List<Boolean> descending = new ArrayList<>();
+        if (!TextUtils.isEmpty(orderBy)) {
+            for (String term : orderBy.split(",")) {
+                String[] parts = term.trim().split("\\s+");
+                boolean desc = parts.length == 2 && "DESC".equalsIgnoreCase(parts[1]);
+                if (parts[0].length() == 0 || parts.length > 2
+                        || (parts.length == 2 && !desc && !"ASC".equalsIgnoreCase(parts[1]))) {
+                    throw new SQLiteException("Order term [" + term + "] is not supported by keyset pagination");
+                }
+                names.add(parts[0]);
+                descending.add(desc);
+            }
+        }
+
+        if (!names.contains(Entity._ID)) {
+            names.add(Entity._ID);
+            descending.add(false);
+        }
+
+        boolean[] desc = new boolean[descending.size()];
+        for (int i = 0; i < desc.length; i++) {
+            desc[i] = descending.get(i);
+        }
+        return new Keyset(names.toArray(new String[names.size()]), desc);
+    }
+
+    String[] getNames() {
+        return names;
+    }
+
+    String buildOrderBy() {
+        StringBuilder buffer = new StringBuilder();
+        for (int i = 0; i < names.length; i++) {
+            if (i > 0) {
+                buffer.append(',');
+            }
+            buffer.append(names[i]).append(descending[i] ? " DESC" : " ASC");
+        }
+        return buffer.toString();
+    }
+
+    /**
+     * Build predicate selecting rows after position, bind arguments are added into args.
+     * Row values are used if supported and all keys are in the same direction, otherwise the
+     * equivalent form k1 >= ? AND (k1 > ? OR (k2 >= ? AND (...))) is used, whose leading
+     * term can still use an index.
+     */
+    String buildPredicate(Object[] position, List<Object> args) {
+        if (Build.VERSION.SDK_INT >= SDK_VERSION_ROW_VALUES && isSameDirection()) {
+            StringBuilder buffer = new StringBuilder("(");
+            StringBuilder placeholders = new StringBuilder("(");
+            for (int i = 0; i < names.length; i++) {
+                buffer.append(i == 0 ? "" : ",").append(names[i]);
+                placeholders.append(i == 0 ? "?" : ",?");
+                args.add(position[i]);
+            }
+            buffer.append(descending[0] ? ") < " : ") > ").append(placeholders).append(')');
+            return buffer.toString();
+        }
+
+        StringBuilder buffer = new StringBuilder();
+        for (int i = 0; i < names.length; i++) {
+            String after = descending[i] ? " < ?" : " > ?";
+            if (i == names.length - 1) {
+                buffer.append(names[i]).append(after);
+                args.add(position[i]);
+            } else {
+                buffer.append(names[i]).append(descending[i] ? " <= ?" : " >= ?")
+                        .append(" AND (").append(names[i]).append(after).append(" OR (");
+                args.add(position[i]);
+                args.add(position[i]);
+            }
+        }
+        for (int i = 0; i < names.length - 1; i++) {
+            buffer.append("))");
+        }
+        return buffer.toString();
+    }
+
+    private boolean isSameDirection() {
+        for (boolean desc : descending) {
+            if (desc != descending[0]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Encode key values of current row of cursor as continuation token.
+     */
+    String encodeToken(Cursor cursor) {
+        JSONArray values = new JSONArray();
+        for (String name : names) {
+            int index = cursor.getColumnIndex(name);
+            if (index < 0) {
+                throw new SQLiteException("Sort key [" + name + "] is not a column of query result");
+            }
+            switch (cursor.getType(index)) {
+                case Cursor.FIELD_TYPE_INTEGER:
+                    values.put(cursor.getLong(index));
+                    break;
+                case Cursor.FIELD_TYPE_FLOAT:
+                    values.put(Double.valueOf(cursor.getDouble(index)));
+                    break;
+                case Cursor.FIELD_TYPE_STRING:
+                    values.put(cursor.getString(index));
+                    break;
+                default:
+                    throw new SQLiteException("Sort key [" + name + "] must be a not null number or text");
+            }
+        }
+        return Base64.encodeToString(values.toString().getBytes(UTF_8), Base64.URL_SAFE | Base64.NO_WRAP);
+    }
+
+    /**
+     * Decode key values of position stored in continuation token.
+     */
+    Object[] decodeToken(String token) {
+        try {
+            JSONArray values = new JSONArray(new String(Base64.decode(token, Base64.URL_SAFE | Base64.NO_WRAP), UTF_8));
+            if (values.length() != names.length) {
+                throw new SQLiteException("Continuation token doesn't match sort keys " + buildOrderBy());
+            }
+
+            Object[] position = new Object[names.length];
+            for (int i = 0; i < position.length; i++) {
+                position[i] = values.get(i);
+            }
+            return position;
+        } catch (JSONException | IllegalArgumentException e) {
+            throw new SQLiteException("Invalid continuation token: " + token);
+        }
+    }
+}
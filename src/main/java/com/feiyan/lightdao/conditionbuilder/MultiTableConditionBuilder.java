@@ -8,20 +8,25 @@ import android.database.sqlite.SQLiteQueryBuilder;
 import android.util.Log;
 
 import com.feiyan.lightdao.annotation.CrossJoin;
-import com.feiyan.lightdao.annotation.ID;
 import com.feiyan.lightdao.DBUtils;
 import com.feiyan.lightdao.Entity;
+import com.feiyan.lightdao.EntityMeta;
+import com.feiyan.lightdao.EntityMeta.BindingPlan;
 import com.feiyan.lightdao.Query;
+import com.feiyan.lightdao.QueryPlanWatchdog;
 import com.feiyan.lightdao.ReflectTools;
-import com.feiyan.lightdao.ColumnInfo;
+import com.feiyan.lightdao.ResultCache;
+import com.feiyan.lightdao.SQL;
+import com.feiyan.lightdao.ColumnMeta;
 import com.feiyan.lightdao.annotation.InnerJoin;
 import com.feiyan.lightdao.annotation.InnerJoinItem;
 import com.feiyan.lightdao.annotation.LeftJoin;
 import com.feiyan.lightdao.annotation.NaturalJoin;
 
-import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Smilier with {@link ConditionBuilder} but expose api for
@@ -30,12 +35,14 @@ import java.util.List;
  * @author zhangfei
  */
 public class MultiTableConditionBuilder<T extends Query> implements BuilderSupport<T>{
+    private static final String[] EXISTS_COLUMNS = {"1"};
+
     private final SQLiteDatabase database;
 
     private Class<T> clazz;
     private String[] columns;
     private String whereClause;
-    private String[] whereArgs;
+    private Object[] whereArgs;
     private String groupBy;
     private String having;
     private String orderBy;
@@ -61,21 +68,23 @@ public class MultiTableConditionBuilder<T extends Query> implements BuilderSuppo
     @Override
     public MultiTableConditionBuilder<T> withWhere(String whereClause, Object... whereArgs) {
         this.whereClause = whereClause;
-        this.whereArgs = new String[whereArgs.length];
+        this.whereArgs = new Object[whereArgs.length];
 
+        // arguments keep their own type and are bound natively, Boolean is bound as 1 or 0
         for (int i = 0; i < whereArgs.length; i++) {
             Object arg = whereArgs[i];
 
             if (arg instanceof String
                     || arg instanceof Integer
                     || arg instanceof Long
+                    || arg instanceof Short
                     || arg instanceof Float
-                    || arg instanceof Double) {
-                this.whereArgs[i] = arg.toString();
-            } else if (arg instanceof Boolean) {
-                this.whereArgs[i] = Boolean.valueOf(arg.toString()) ? "1" : "0";
+                    || arg instanceof Double
+                    || arg instanceof Boolean
+                    || arg instanceof byte[]) {
+                this.whereArgs[i] = arg;
             } else {
-                throw new SQLException(arg.toString() + " is not supported as where argument in SQLite");
+                throw new SQLException(arg + " is not supported as where argument in SQLite");
             }
         }
 
@@ -116,11 +125,27 @@ public class MultiTableConditionBuilder<T extends Query> implements BuilderSuppo
     @Override
     public T applySearchById(long id) {
         this.whereClause = Entity._ID + "=?";
-        this.whereArgs = new String[]{String.valueOf(id)};
+        this.whereArgs = new Object[]{id};
 
         return applySearchFirst();
     }
 
+    @Override
+    public boolean applyExists() {
+        String query = SQLiteQueryBuilder.buildQueryString(
+                false, buildJoinClause(), EXISTS_COLUMNS, whereClause,
+                groupBy, having, null, "1");
+        Cursor c = new SQL(query, whereArgs).rawQuery(database);
+        try {
+            return c.moveToFirst();
+        } catch (SQLiteException e) {
+            Log.e(DBUtils.TAG, "applyExists() error: " + DBUtils.getTraceInfo(e));
+            return false;
+        } finally {
+            c.close();
+        }
+    }
+
     @Override
     public int applyCount() {
         this.columns = Entity.COUNT_COLUMNS;
@@ -144,6 +169,117 @@ public class MultiTableConditionBuilder<T extends Query> implements BuilderSuppo
         }
     }
 
+    /**
+     * Apply aggregate function on expression over rows matching condition, it's executed by SQLite
+     * and only the result is read as double, use {@link #applyAggregateAsLong(Aggregate, String)}
+     * for INTEGER result larger than 2^53.
+     *
+     * @param aggregate  aggregate function
+     * @param expression column name or expression to aggregate
+     * @return aggregated value, 0 if it's NULL (no row for SUM, AVG, MIN or MAX)
+     * @throws SQLiteException if query fails, it's never reported as 0
+     */
+    @Override
+    public double applyAggregate(Aggregate aggregate, String expression) {
+        this.columns = new String[]{aggregate.toSql(expression)};
+        this.aliasColumns = this.columns;
+
+        Cursor c = applySearch();
+        try {
+            return c.moveToFirst() ? c.getDouble(0) : 0;
+        } finally {
+            c.close();
+        }
+    }
+
+    /**
+     * Apply aggregate function whose result is INTEGER, such as COUNT, or SUM, MIN and MAX of an
+     * INTEGER column, the result is read as long without the precision lost by double.
+     *
+     * @param aggregate  aggregate function
+     * @param expression column name or expression to aggregate
+     * @return aggregated value, 0 if it's NULL (no row for SUM, MIN or MAX)
+     * @throws SQLiteException if result is not INTEGER or query fails
+     */
+    @Override
+    public long applyAggregateAsLong(Aggregate aggregate, String expression) {
+        this.columns = new String[]{aggregate.toSql(expression)};
+        this.aliasColumns = this.columns;
+
+        Cursor c = applySearch();
+        try {
+            return c.moveToFirst() ? Aggregate.readLong(c, 0, columns[0]) : 0;
+        } finally {
+            c.close();
+        }
+    }
+
+    @Override
+    public double applySum(String expression) {
+        return applyAggregate(Aggregate.SUM, expression);
+    }
+
+    @Override
+    public long applySumAsLong(String expression) {
+        return applyAggregateAsLong(Aggregate.SUM, expression);
+    }
+
+    @Override
+    public double applyAvg(String expression) {
+        return applyAggregate(Aggregate.AVG, expression);
+    }
+
+    @Override
+    public double applyMin(String expression) {
+        return applyAggregate(Aggregate.MIN, expression);
+    }
+
+    @Override
+    public long applyMinAsLong(String expression) {
+        return applyAggregateAsLong(Aggregate.MIN, expression);
+    }
+
+    @Override
+    public double applyMax(String expression) {
+        return applyAggregate(Aggregate.MAX, expression);
+    }
+
+    @Override
+    public long applyMaxAsLong(String expression) {
+        return applyAggregateAsLong(Aggregate.MAX, expression);
+    }
+
+    @Override
+    public long applyCountDistinct(String expression) {
+        return applyAggregateAsLong(Aggregate.COUNT_DISTINCT, expression);
+    }
+
+    /**
+     * Apply aggregate function on expression for every group of key with one GROUP BY query.
+     * Key must be INTEGER, {@link android.database.sqlite.SQLiteException} is thrown if a key
+     * of other type is read, or if GROUP BY or ORDER BY other than key was set on the builder.
+     *
+     * @param keyExpression column name or expression of integer group key
+     * @param aggregate     aggregate function
+     * @param expression    column name or expression to aggregate
+     * @return aggregated value of every group key
+     */
+    @Override
+    public GroupedResult applyGroupedAggregate(String keyExpression, Aggregate aggregate, String expression) {
+        GroupedResult.checkClauses(keyExpression, groupBy, orderBy);
+        this.columns = new String[]{keyExpression, aggregate.toSql(expression)};
+        this.aliasColumns = this.columns;
+        this.groupBy = keyExpression;
+        this.orderBy = keyExpression;
+
+        Cursor c = applySearch();
+        try {
+            return GroupedResult.read(c, keyExpression);
+        } finally {
+            c.close();
+        }
+    }
+
     /**
      * Apply search and return cursor as result
      *
@@ -151,50 +287,99 @@ public class MultiTableConditionBuilder<T extends Query> implements BuilderSuppo
      */
     @Override
     public Cursor applySearch() {
-        String limit = null;
-        if (limitOffset != null && limitSize != null) {
-            limit = limitOffset + "," + limitSize;
+        return buildSearchSQL().rawQuery(database);
+    }
+
+    private SQL buildSearchSQL() {
+        // limit values are bound too, so that query text is the same for every page
+        boolean limit = limitOffset != null && limitSize != null;
+        QueryShapeCache.Shape shape = new QueryShapeCache.Shape(
+                clazz, aliasColumns, whereClause, groupBy, having, orderBy, distinct, limit);
+        String query = QueryShapeCache.get(shape);
+        if (query == null) {
+            query = SQLiteQueryBuilder.buildQueryString(
+                    distinct, buildJoinClause(), aliasColumns, whereClause,
+                    groupBy, having, orderBy, null);
+            if (limit) {
+                query += " LIMIT ?,?";
+            }
+            QueryShapeCache.put(shape, query);
         }
 
+        Object[] args = limit ? appendLimitArgs(whereArgs) : whereArgs;
+        SQL sql = new SQL(query, args);
+        QueryPlanWatchdog.check(database, sql);
+        return sql;
+    }
+
+    private String buildJoinClause() {
         InnerJoin innerJoin = clazz.getAnnotation(InnerJoin.class);
         if (innerJoin != null){
-            String tables = JoinClauseBuilder.buildInnerJoinClause(innerJoin);
-            String query = SQLiteQueryBuilder.buildQueryString(
-                    distinct, tables, aliasColumns, whereClause,
-                    groupBy, having, orderBy, limit);
-            return database.rawQuery(query, whereArgs);
+            return JoinClauseBuilder.buildInnerJoinClause(innerJoin);
         }
 
         LeftJoin leftJoin = clazz.getAnnotation(LeftJoin.class);
         if (leftJoin != null){
-            String tables = JoinClauseBuilder.buildLeftJoinClause(leftJoin);
-            String query = SQLiteQueryBuilder.buildQueryString(
-                    distinct, tables, aliasColumns, whereClause,
-                    groupBy, having, orderBy, limit);
-            return database.rawQuery(query, whereArgs);
+            return JoinClauseBuilder.buildLeftJoinClause(leftJoin);
         }
 
         CrossJoin crossJoin = clazz.getAnnotation(CrossJoin.class);
         if (crossJoin != null){
-            String tables = JoinClauseBuilder.buildCrossJoinClause(crossJoin);
-            String query = SQLiteQueryBuilder.buildQueryString(
-                    distinct, tables, aliasColumns, whereClause,
-                    groupBy, having, orderBy, limit);
-            return database.rawQuery(query, whereArgs);
+            return JoinClauseBuilder.buildCrossJoinClause(crossJoin);
         }
 
         NaturalJoin naturalJoin = clazz.getAnnotation(NaturalJoin.class);
         if (naturalJoin != null){
-            String tables = JoinClauseBuilder.buildNaturalJoinClause(naturalJoin);
-            String query = SQLiteQueryBuilder.buildQueryString(
-                    distinct, tables, aliasColumns, whereClause,
-                    groupBy, having, orderBy, limit);
-            return database.rawQuery(query, whereArgs);
+            return JoinClauseBuilder.buildNaturalJoinClause(naturalJoin);
         }
 
         throw new SQLiteException("no join annotation found over Query class");
     }
 
+    /**
+     * @return tables read by query, taken from join annotation of class
+     */
+    private String[] getJoinTables() {
+        Set<String> tables = new LinkedHashSet<>();
+        InnerJoin innerJoin = clazz.getAnnotation(InnerJoin.class);
+        if (innerJoin != null) {
+            for (InnerJoinItem item : innerJoin.value()) {
+                tables.add(item.firstTable());
+                tables.add(item.secondTable());
+            }
+        }
+
+        LeftJoin leftJoin = clazz.getAnnotation(LeftJoin.class);
+        if (leftJoin != null) {
+            tables.add(leftJoin.firstTable());
+            tables.add(leftJoin.secondTable());
+        }
+
+        CrossJoin crossJoin = clazz.getAnnotation(CrossJoin.class);
+        if (crossJoin != null) {
+            tables.add(crossJoin.firstTable());
+            tables.add(crossJoin.secondTable());
+        }
+
+        NaturalJoin naturalJoin = clazz.getAnnotation(NaturalJoin.class);
+        if (naturalJoin != null) {
+            tables.add(naturalJoin.firstTable());
+            tables.add(naturalJoin.secondTable());
+        }
+        return tables.toArray(new String[tables.size()]);
+    }
+
+    private Object[] appendLimitArgs(Object[] args) {
+        int length = args != null ? args.length : 0;
+        Object[] result = new Object[length + 2];
+        if (length > 0) {
+            System.arraycopy(args, 0, result, 0, length);
+        }
+        result[length] = limitOffset;
+        result[length + 1] = limitSize;
+        return result;
+    }
+
     /**
      * Apply search with condition and return list as result
      *
@@ -202,15 +387,26 @@ public class MultiTableConditionBuilder<T extends Query> implements BuilderSuppo
      */
     @Override
     public List<T> applySearchAsList() {
-        Cursor c = applySearch();
+        SQL sql = buildSearchSQL();
+        ResultCache cache = ResultCache.getInstance();
+        String[] tableNames = null;
+        long[] versions = null;
+        if (cache != null) {
+            List<T> cached = cache.get(database, clazz, sql);
+            if (cached != null) {
+                return cached;
+            }
+            tableNames = getJoinTables();
+            versions = ResultCache.getVersions(database, tableNames);
+        }
+
+        Cursor c = sql.rawQuery(database);
         List<T> entities = new ArrayList<>();
 
         try {
+            BindingPlan<T> plan = ReflectTools.getEntityMeta(clazz).newBindingPlan(c, columns);
             while (c.moveToNext()) {
-                T table = getContent(c, clazz);
-                if (table != null) {
-                    entities.add(table);
-                }
+                entities.add(plan.read(c));
             }
         } catch (SQLiteException e) {
             Log.e(DBUtils.TAG, "applySearchAsList() error: " + DBUtils.getTraceInfo(e));
@@ -218,9 +414,90 @@ public class MultiTableConditionBuilder<T extends Query> implements BuilderSuppo
         } finally {
             c.close();
         }
+
+        if (cache != null) {
+            cache.put(database, clazz, sql, tableNames, versions, entities);
+        }
         return entities;
     }
 
+    /**
+     * Apply search and return an iterator which reads one row at a time, close it if iteration
+     * stops before the end.
+     *
+     * @return iterator of table class object
+     */
+    @Override
+    public CursorIterator<T> applySearchAsIterator() {
+        Cursor c = applySearch();
+        try {
+            return new CursorIterator<>(c, ReflectTools.getEntityMeta(clazz).newBindingPlan(c, columns));
+        } catch (RuntimeException e) {
+            c.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Apply search and pass rows to callback one at a time, until the end or callback returns false.
+     *
+     * @return count of rows passed to callback
+     */
+    @Override
+    public int applyForEach(RowCallback<T> callback) {
+        CursorIterator<T> iterator = applySearchAsIterator();
+        int count = 0;
+        try {
+            while (iterator.hasNext()) {
+                count++;
+                if (!callback.onRow(iterator.next())) {
+                    break;
+                }
+            }
+        } catch (SQLiteException e) {
+            Log.e(DBUtils.TAG, "applyForEach() error: " + DBUtils.getTraceInfo(e));
+        } finally {
+            iterator.close();
+        }
+        return count;
+    }
+
+    /**
+     * Apply search of columns and return result stored by column, see {@link ColumnarResult}.
+     *
+     * @param columns names of columns of query class, or expressions to read
+     * @return result stored as primitive arrays and dictionary encoded text
+     */
+    @Override
+    public ColumnarResult applySearchAsColumns(String... columns) {
+        if (columns == null || columns.length == 0) {
+            throw new IllegalArgumentException("columns to read cannot be empty");
+        }
+
+        // select column of query class with its alias, so that result column has its name
+        EntityMeta<T> meta = ReflectTools.getEntityMeta(clazz);
+        String[] selection = new String[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            selection[i] = columns[i];
+            for (int j = 0; j < meta.getColumnCount(); j++) {
+                ColumnMeta column = meta.getColumn(j);
+                if (column.getName().equals(columns[i])) {
+                    selection[i] = column.getAliasName();
+                    break;
+                }
+            }
+        }
+
+        this.columns = columns;
+        this.aliasColumns = selection;
+        Cursor c = applySearch();
+        try {
+            return ColumnarResult.read(c, columns, meta);
+        } finally {
+            c.close();
+        }
+    }
+
     /**
      * Apply search first row with condition
      *
@@ -236,7 +513,7 @@ public class MultiTableConditionBuilder<T extends Query> implements BuilderSuppo
 
         try {
             if (c.moveToFirst()) {
-                return getContent(c, clazz);
+                return ReflectTools.getEntityMeta(clazz).newBindingPlan(c, columns).read(c);
             } else {
                 return null;
             }
@@ -252,19 +529,19 @@ public class MultiTableConditionBuilder<T extends Query> implements BuilderSuppo
         this.clazz = clazz;
 
         // read columns from class
-        Field[] fields = ReflectTools.getClassFields(clazz);
+        EntityMeta<T> meta = ReflectTools.getEntityMeta(clazz);
 
         List<String> columns = new ArrayList<>();
         List<String> aliasColumns = new ArrayList<>();
-        for (Field field : fields) {
+        for (int i = 0; i < meta.getColumnCount(); i++) {
             // ignore _id field
-            if (field.isAnnotationPresent(ID.class)) {
+            ColumnMeta column = meta.getColumn(i);
+            if (column.isId()) {
                 continue;
             }
 
-            ColumnInfo columnInfo = ReflectTools.getColumnInfo(field);
-            columns.add(columnInfo.getName());
-            aliasColumns.add(columnInfo.getAliasName());
+            columns.add(column.getName());
+            aliasColumns.add(column.getAliasName());
         }
 
         this.columns = columns.toArray(new String[columns.size()]);
@@ -272,17 +549,4 @@ public class MultiTableConditionBuilder<T extends Query> implements BuilderSuppo
         return this;
     }
 
-    private T getContent(Cursor cursor, Class<T> tableClass) {
-        try {
-            T content = tableClass.newInstance();
-            content.restore(cursor, columns);
-            return content;
-        } catch (IllegalAccessException e) {
-            Log.e(DBUtils.TAG, "getContent() error: " + DBUtils.getTraceInfo(e));
-        } catch (InstantiationException e) {
-            Log.e(DBUtils.TAG, "getContent() error: " + DBUtils.getTraceInfo(e));
-        }
-        return null;
-    }
-
 }
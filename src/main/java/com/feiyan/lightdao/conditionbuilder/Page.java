@@ -0,0 +1,35 @@
+package com.feiyan.lightdao.conditionbuilder;
+
+import com.feiyan.lightdao.Query;
+
+import java.util.List;
+
+/**
+ * One page of keyset pagination, see {@link ConditionBuilder#applySearchPage(int, String)}.
+ *
+ * @author zhangfei
+ */
+public final class Page<T extends Query> {
+    private final List<T> items;
+    private final String nextToken;
+
+    Page(List<T> items, String nextToken) {
+        this.items = items;
+        this.nextToken = nextToken;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * @return opaque token to get next page, null if this is the last page
+     */
+    public String getNextToken() {
+        return nextToken;
+    }
+
+    public boolean hasNext() {
+        return nextToken != null;
+    }
+}
@@ -0,0 +1,122 @@
+package com.feiyan.lightdao.conditionbuilder;
+
+import android.util.LruCache;
+
+import java.util.Arrays;
+
+/**
+ * A bounded LRU cache of SELECT sql text keyed by query shape: class, columns, where template,
+ * group by, having, order by, distinct and whether limit is used. Bind arguments are not part
+ * of the shape, so repeated queries skip building the sql text again.
+ * <p>
+ * Only sql text is cached, it holds no compiled statement and no database: a compiled query
+ * can't be reused through the public API of SQLiteDatabase, every query is still prepared by
+ * its connection.
+ *
+ * @author zhangfei
+ */
+public final class QueryShapeCache {
+    private static final int MAX_SIZE = 128;
+
+    private static final LruCache<Shape, String> cache = new LruCache<>(MAX_SIZE);
+
+    private QueryShapeCache() {
+    }
+
+    static String get(Shape shape) {
+        return cache.get(shape);
+    }
+
+    static void put(Shape shape, String sql) {
+        cache.put(shape, sql);
+    }
+
+    public static int getHitCount() {
+        return cache.hitCount();
+    }
+
+    public static int getMissCount() {
+        return cache.missCount();
+    }
+
+    /**
+     * @return hit count divided by lookup count, 0 if there is no lookup yet
+     */
+    public static float getHitRate() {
+        int hitCount = cache.hitCount();
+        int lookupCount = hitCount + cache.missCount();
+        return lookupCount == 0 ? 0 : (float) hitCount / lookupCount;
+    }
+
+    public static void clear() {
+        cache.evictAll();
+    }
+
+    static final class Shape {
+        private final Class<?> clazz;
+        private final String[] columns;
+        private final String where;
+        private final String groupBy;
+        private final String having;
+        private final String orderBy;
+        private final boolean distinct;
+        private final boolean limit;
+        private final int hash;
+
+        Shape(Class<?> clazz, String[] columns, String where, String groupBy, String having,
+              String orderBy, boolean distinct, boolean limit) {
+            this.clazz = clazz;
+            this.columns = columns != null ? columns.clone() : null;
+            this.where = where;
+            this.groupBy = groupBy;
+            this.having = having;
+            this.orderBy = orderBy;
+            this.distinct = distinct;
+            this.limit = limit;
+
+            int result = clazz.hashCode();
+            result = 31 * result + Arrays.hashCode(this.columns);
+            result = 31 * result + hashCode(where);
+            result = 31 * result + hashCode(groupBy);
+            result = 31 * result + hashCode(having);
+            result = 31 * result + hashCode(orderBy);
+            result = 31 * result + (distinct ? 1 : 0);
+            result = 31 * result + (limit ? 1 : 0);
+            this.hash = result;
+        }
+
+        private static int hashCode(String value) {
+            return value != null ? value.hashCode() : 0;
+        }
+
+        private static boolean equals(String a, String b) {
+            return a == null ? b == null : a.equals(b);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Shape)) {
+                return false;
+            }
+
+            Shape shape = (Shape) o;
+            return hash == shape.hash
+                    && clazz == shape.clazz
+                    && distinct == shape.distinct
+                    && limit == shape.limit
+                    && Arrays.equals(columns, shape.columns)
+                    && equals(where, shape.where)
+                    && equals(groupBy, shape.groupBy)
+                    && equals(having, shape.having)
+                    && equals(orderBy, shape.orderBy);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
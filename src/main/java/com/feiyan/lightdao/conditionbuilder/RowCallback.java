@@ -0,0 +1,17 @@
+package com.feiyan.lightdao.conditionbuilder;
+
+import com.feiyan.lightdao.Query;
+
+/**
+ * Receives rows of {@link BuilderSupport#applyForEach(RowCallback)} one at a time.
+ *
+ * @author zhangfei
+ */
+public interface RowCallback<T extends Query> {
+
+    /**
+     * @param row object read from current row, a new object for every row
+     * @return true to continue with next row, false to stop
+     */
+    boolean onRow(T row);
+}
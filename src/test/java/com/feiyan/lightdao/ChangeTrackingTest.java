@@ -0,0 +1,67 @@
+package com.feiyan.lightdao;
+
+import android.content.ContentValues;
+import android.database.MatrixCursor;
+
+import com.feiyan.lightdao.tables.PrivateFieldRecord;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class ChangeTrackingTest {
+
+    @Test
+    public void testFullRowIsNotTrackedUntilAsked() {
+        MatrixCursor cursor = new MatrixCursor(new String[]{"_id", "name", "age"});
+        cursor.addRow(new Object[]{1L, "name", 10});
+        assertTrue(cursor.moveToNext());
+        EntityMeta<PrivateFieldRecord> meta = ReflectTools.getEntityMeta(PrivateFieldRecord.class);
+        PrivateFieldRecord record = meta.newBindingPlan(cursor, null).read(cursor);
+        cursor.close();
+
+        // no snapshot is taken on read, all columns including _id are written
+        assertNull(((Entity) record).loadedValues);
+        assertEquals(3, record.toChangedValues().size());
+
+        record.clearChanges();
+        assertEquals(0, record.toChangedValues().size());
+        record.age = 11;
+        ContentValues values = record.toChangedValues();
+        assertEquals(1, values.size());
+        assertEquals(Integer.valueOf(11), values.getAsInteger("age"));
+    }
+
+    @Test
+    public void testPartialRowIsTrackedOnRead() {
+        MatrixCursor cursor = new MatrixCursor(new String[]{"_id", "name"});
+        cursor.addRow(new Object[]{1L, "name"});
+        assertTrue(cursor.moveToNext());
+        EntityMeta<PrivateFieldRecord> meta = ReflectTools.getEntityMeta(PrivateFieldRecord.class);
+        PrivateFieldRecord record = meta.newBindingPlan(cursor, new String[]{"_id", "name"}).read(cursor);
+        cursor.close();
+
+        // unread age is never written back with its default value
+        assertNotNull(((Entity) record).loadedValues);
+        assertEquals(0, record.toChangedValues().size());
+        record.setName("changed");
+        assertEquals("changed", record.toChangedValues().getAsString("name"));
+        assertEquals(1, record.toChangedValues().size());
+    }
+
+    @Test
+    public void testTrackChangesKeepsExistingSnapshot() {
+        PrivateFieldRecord record = new PrivateFieldRecord();
+        record.id = 1;
+        record.clearChanges();
+        record.age = 3;
+        ((Entity) record).trackChanges();
+        assertEquals(1, record.toChangedValues().size());
+    }
+}
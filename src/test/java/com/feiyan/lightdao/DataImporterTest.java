@@ -0,0 +1,127 @@
+package com.feiyan.lightdao;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricTestRunner.class)
+public class DataImporterTest {
+    private static final List<String> COLUMNS = Arrays.asList("name", "age", "note");
+
+    private static DataImporter.CsvRecordReader csv(String data) {
+        return new DataImporter.CsvRecordReader(new StringReader(data), COLUMNS);
+    }
+
+    private static DataImporter.JsonRecordReader ndjson(String data) {
+        return new DataImporter.JsonRecordReader(new StringReader(data), COLUMNS);
+    }
+
+    @Test
+    public void testCsvQuotedSeparatorAndEscapedQuote() throws IOException {
+        DataImporter.CsvRecordReader reader = csv("\"a,b\",\"say \"\"hi\"\"\",plain");
+        assertEquals(Arrays.asList("a,b", "say \"hi\"", "plain"), reader.readRecord());
+        assertNull(reader.readRecord());
+    }
+
+    @Test
+    public void testCsvQuotedLineBreak() throws IOException {
+        DataImporter.CsvRecordReader reader = csv("\"line 1\nline 2\",x\nnext,y\n");
+        assertEquals(Arrays.asList("line 1\nline 2", "x"), reader.readRecord());
+        assertEquals(Arrays.asList("next", "y"), reader.readRecord());
+        assertNull(reader.readRecord());
+    }
+
+    @Test
+    public void testCsvCrlfAndBlankLines() throws IOException {
+        DataImporter.CsvRecordReader reader = csv("\r\na,1\r\n\r\n\nb,2\r\n\r\n");
+        assertEquals(Arrays.asList("a", "1"), reader.readRecord());
+        assertEquals(Arrays.asList("b", "2"), reader.readRecord());
+        assertNull(reader.readRecord());
+    }
+
+    @Test
+    public void testCsvEmptyValues() throws IOException {
+        // a lone empty quoted value is a record, not a blank line
+        DataImporter.CsvRecordReader reader = csv("\"\"\n,\na,\n");
+        assertEquals(Arrays.asList(""), reader.readRecord());
+        assertEquals(Arrays.asList("", ""), reader.readRecord());
+        assertEquals(Arrays.asList("a", ""), reader.readRecord());
+        assertNull(reader.readRecord());
+    }
+
+    @Test
+    public void testCsvUnterminatedQuote() {
+        try {
+            csv("\"open,1\n").readRecord();
+            fail("unterminated quoted value should fail");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("Unterminated"));
+        }
+    }
+
+    @Test
+    public void testCsvColumnsResolvedFromHeaderWithBom() throws IOException {
+        // header order differs from columns, "age" is missing and "extra" is unknown
+        DataImporter.CsvRecordReader reader = csv("\uFEFFnote,extra,name\r\nhello,x,Tom\r\n,y,\"Jerry, jr\"\r\n");
+        assertTrue(reader.next());
+        assertEquals("Tom", reader.get(0));
+        assertNull(reader.get(1));
+        assertEquals("hello", reader.get(2));
+
+        assertTrue(reader.next());
+        assertEquals("Jerry, jr", reader.get(0));
+        assertEquals("", reader.get(2));
+        assertTrue(!reader.next());
+    }
+
+    @Test
+    public void testCsvShortRecordAndEmptyData() throws IOException {
+        DataImporter.CsvRecordReader reader = csv("name,age,note\nTom\n");
+        assertTrue(reader.next());
+        assertEquals("Tom", reader.get(0));
+        assertNull(reader.get(1));
+        assertNull(reader.get(2));
+        assertTrue(!reader.next());
+
+        assertTrue(!csv("").next());
+        assertTrue(!csv("name,age\n").next());
+    }
+
+    @Test
+    public void testNdjsonValuesByColumn() throws IOException {
+        DataImporter.JsonRecordReader reader = ndjson("{\"name\":\"Tom\",\"age\":12,\"note\":null}\n"
+                + "\n   \n"
+                + "{\"age\":true,\"other\":1}\n");
+        assertTrue(reader.next());
+        assertEquals("Tom", reader.get(0));
+        assertEquals(12, ((Number) reader.get(1)).intValue());
+        assertNull(reader.get(2));
+
+        assertTrue(reader.next());
+        assertNull(reader.get(0));
+        assertEquals(Boolean.TRUE, reader.get(1));
+        assertTrue(!reader.next());
+    }
+
+    @Test
+    public void testNdjsonInvalidLine() throws IOException {
+        DataImporter.JsonRecordReader reader = ndjson("{\"name\":\"Tom\"}\nnot json\n");
+        assertTrue(reader.next());
+        try {
+            reader.next();
+            fail("invalid line should fail");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().startsWith("Invalid JSON line"));
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.feiyan.lightdao;
+
+import com.feiyan.lightdao.tables.TagRecord;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Entity cache is kept per database, caches are looked up by database key so that no database
+ * is opened here.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class EntityCacheTest {
+    private static final String FIRST_DB = "/data/first.db";
+    private static final String SECOND_DB = "/data/second.db";
+
+    private static TagRecord newTag(long id, String tag) {
+        TagRecord record = new TagRecord();
+        record.id = id;
+        record.tag = tag;
+        return record;
+    }
+
+    @Before
+    public void setUp() {
+        EntityCache.enable(TagRecord.class, 10);
+    }
+
+    @After
+    public void tearDown() {
+        EntityCache.disable(TagRecord.class);
+    }
+
+    @Test
+    public void testDatabasesHaveSeparateCaches() {
+        EntityCache first = EntityCache.of(FIRST_DB, TagRecord.class);
+        EntityCache second = EntityCache.of(SECOND_DB, TagRecord.class);
+        assertNotNull(first);
+        assertNotNull(second);
+        assertNotSame(first, second);
+
+        first.put(newTag(1, "first"), first.getVersion());
+        second.put(newTag(1, "second"), second.getVersion());
+        assertEquals("first", first.get(TagRecord.class, 1).tag);
+        assertEquals("second", second.get(TagRecord.class, 1).tag);
+        assertNull(EntityCache.of(FIRST_DB, TagRecord.class).get(TagRecord.class, 2));
+    }
+
+    @Test
+    public void testInvalidateOnlyTouchesItsDatabase() {
+        EntityCache first = EntityCache.of(FIRST_DB, TagRecord.class);
+        EntityCache second = EntityCache.of(SECOND_DB, TagRecord.class);
+        first.put(newTag(1, "first"), first.getVersion());
+        second.put(newTag(1, "second"), second.getVersion());
+
+        EntityCache.invalidate(FIRST_DB, TagRecord.class, 1);
+        assertNull(first.get(TagRecord.class, 1));
+        assertEquals("second", second.get(TagRecord.class, 1).tag);
+
+        EntityCache.invalidate(SECOND_DB, TagRecord.class);
+        assertNull(second.get(TagRecord.class, 1));
+    }
+
+    @Test
+    public void testEnableAndDisableApplyToEveryDatabase() {
+        EntityCache first = EntityCache.of(FIRST_DB, TagRecord.class);
+        first.put(newTag(1, "first"), first.getVersion());
+
+        // enabling again drops the old cache
+        EntityCache.enable(TagRecord.class, 5);
+        EntityCache enabled = EntityCache.of(FIRST_DB, TagRecord.class);
+        assertNotSame(first, enabled);
+        assertNull(enabled.get(TagRecord.class, 1));
+
+        EntityCache.disable(TagRecord.class);
+        assertNull(EntityCache.of(FIRST_DB, TagRecord.class));
+        assertNull(EntityCache.of(SECOND_DB, TagRecord.class));
+    }
+}
@@ -0,0 +1,49 @@
+package com.feiyan.lightdao;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Plan details are the text of EXPLAIN QUERY PLAN of SQLite before and since 3.36.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class QueryPlanWatchdogTest {
+
+    @After
+    public void tearDown() {
+        QueryPlanWatchdog.disable();
+    }
+
+    @Test
+    public void testFullScanIsDetected() {
+        assertTrue(QueryPlanWatchdog.isFullScan("SCAN TABLE t"));
+        assertTrue(QueryPlanWatchdog.isFullScan("SCAN t"));
+    }
+
+    @Test
+    public void testScanUsingIndexIsNotFullScan() {
+        assertFalse(QueryPlanWatchdog.isFullScan("SCAN t USING INDEX idx_t_a"));
+        assertFalse(QueryPlanWatchdog.isFullScan("SCAN TABLE t USING INDEX idx_t_a"));
+        assertFalse(QueryPlanWatchdog.isFullScan("SCAN TABLE t USING COVERING INDEX idx_t_a"));
+        assertFalse(QueryPlanWatchdog.isFullScan("SCAN CONSTANT ROW"));
+        assertFalse(QueryPlanWatchdog.isFullScan("SEARCH t USING INTEGER PRIMARY KEY (rowid=?)"));
+        assertFalse(QueryPlanWatchdog.isFullScan("USE TEMP B-TREE FOR ORDER BY"));
+    }
+
+    @Test
+    public void testQueryIsCheckedOncePerDatabase() {
+        String sql = "SELECT * FROM t WHERE a = ?";
+        assertTrue(QueryPlanWatchdog.markChecked("/data/first.db", sql));
+        assertFalse(QueryPlanWatchdog.markChecked("/data/first.db", sql));
+        assertTrue(QueryPlanWatchdog.markChecked("/data/second.db", sql));
+
+        // checked queries are forgotten when it's disabled
+        QueryPlanWatchdog.disable();
+        assertTrue(QueryPlanWatchdog.markChecked("/data/first.db", sql));
+    }
+}
@@ -0,0 +1,83 @@
+package com.feiyan.lightdao;
+
+import com.feiyan.lightdao.tables.TagRecord;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Results and table versions are kept per database, they are looked up by database key so that
+ * no database is opened here.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ResultCacheTest {
+    private static final String FIRST_DB = "/data/first.db";
+    private static final String SECOND_DB = "/data/second.db";
+    private static final String[] TABLES = {"tag_record"};
+    private static final SQL QUERY = new SQL("SELECT * FROM tag_record WHERE tag = ?", "a");
+
+    private ResultCache cache;
+
+    @Before
+    public void setUp() {
+        ResultCache.enable(1024 * 1024, 100);
+        cache = ResultCache.getInstance();
+    }
+
+    @After
+    public void tearDown() {
+        ResultCache.disable();
+    }
+
+    private void put(String databaseKey, String tag) {
+        TagRecord record = new TagRecord();
+        record.id = 1;
+        record.tag = tag;
+        List<TagRecord> rows = Collections.singletonList(record);
+        cache.put(databaseKey, TagRecord.class, QUERY, TABLES, ResultCache.getVersions(databaseKey, TABLES), rows);
+    }
+
+    @Test
+    public void testSameQueryOfDatabasesIsCachedSeparately() {
+        put(FIRST_DB, "first");
+        assertNull(cache.get(SECOND_DB, TagRecord.class, QUERY));
+
+        put(SECOND_DB, "second");
+        assertEquals("first", cache.get(FIRST_DB, TagRecord.class, QUERY).get(0).tag);
+        assertEquals("second", cache.get(SECOND_DB, TagRecord.class, QUERY).get(0).tag);
+    }
+
+    @Test
+    public void testInvalidateOnlyDropsResultsOfItsDatabase() {
+        put(FIRST_DB, "first");
+        put(SECOND_DB, "second");
+        long[] secondVersions = ResultCache.getVersions(SECOND_DB, TABLES);
+
+        // table name is case insensitive
+        ResultCache.invalidate(FIRST_DB, "TAG_RECORD");
+        assertNull(cache.get(FIRST_DB, TagRecord.class, QUERY));
+        assertEquals("second", cache.get(SECOND_DB, TagRecord.class, QUERY).get(0).tag);
+        assertEquals(secondVersions[0], ResultCache.getVersions(SECOND_DB, TABLES)[0]);
+    }
+
+    @Test
+    public void testResultQueriedBeforeInvalidationIsNotCached() {
+        long[] versions = ResultCache.getVersions(FIRST_DB, TABLES);
+        ResultCache.invalidate(FIRST_DB, "tag_record");
+
+        TagRecord record = new TagRecord();
+        record.id = 1;
+        record.tag = "stale";
+        cache.put(FIRST_DB, TagRecord.class, QUERY, TABLES, versions, Collections.singletonList(record));
+        assertNull(cache.get(FIRST_DB, TagRecord.class, QUERY));
+    }
+}
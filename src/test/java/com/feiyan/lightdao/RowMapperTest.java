@@ -0,0 +1,343 @@
+package com.feiyan.lightdao;
+
+import android.content.ContentValues;
+import android.database.MatrixCursor;
+
+import com.feiyan.lightdao.tables.FinalFieldRecord;
+import com.feiyan.lightdao.tables.MappedRecord;
+import com.feiyan.lightdao.tables.PrivateFieldRecord;
+import com.feiyan.lightdao.tables.UnsortedRecord;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Generated RowMapper must read and write the same values as the reflection way.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class RowMapperTest {
+
+    @Test
+    public void testMapperIsGeneratedForAccessibleFieldsOnly() {
+        assertNotNull(ReflectTools.getRowMapper(MappedRecord.class));
+        assertNull(ReflectTools.getRowMapper(PrivateFieldRecord.class));
+        assertNull(ReflectTools.getRowMapper(FinalFieldRecord.class));
+    }
+
+    @Test
+    public void testMetaColumnsFollowMapperOrder() {
+        // declaration order with fields of superclass first, not the alphabetical order
+        assertEquals(Arrays.asList("_id", "zone", "amount", "weight", "name", "blob_data", "count"),
+                Arrays.asList(ReflectTools.getRowMapper(UnsortedRecord.class).getColumnNames()));
+
+        for (Class<? extends Query> clazz : Arrays.asList(MappedRecord.class, UnsortedRecord.class)) {
+            EntityMeta<? extends Query> meta = ReflectTools.getEntityMeta(clazz);
+            assertEquals(Arrays.asList(meta.getRowMapper().getColumnNames()), Arrays.asList(columnNames(meta)));
+        }
+    }
+
+    @Test
+    public void testColumnsAreReorderedByMapperNames() {
+        EntityMeta<UnsortedRecord> meta = ReflectTools.getEntityMeta(UnsortedRecord.class);
+        String[] mapperNames = meta.getRowMapper().getColumnNames();
+
+        // reflection order differs from mapper order, as it does on ART
+        List<ColumnMeta> reflected = new ArrayList<>(Arrays.asList(meta.getColumns()));
+        Collections.reverse(reflected);
+        ColumnMeta[] ordered = EntityMeta.orderByMapper(reflected, mapperNames);
+        assertNotNull(ordered);
+        for (int i = 0; i < mapperNames.length; i++) {
+            assertEquals(mapperNames[i], ordered[i].getName());
+        }
+
+        // a stale mapper of other columns is not used
+        String[] renamed = mapperNames.clone();
+        renamed[1] = "renamed";
+        assertNull(EntityMeta.orderByMapper(reflected, renamed));
+        assertNull(EntityMeta.orderByMapper(reflected, Arrays.copyOf(mapperNames, mapperNames.length - 1)));
+    }
+
+    @Test
+    public void testRestoreMatchesReflection() {
+        Map<String, Object> row = new HashMap<>();
+        row.put("_id", 7L);
+        row.put("int_value", -1);
+        row.put("integer_value", 2);
+        row.put("long_value", 1L << 40);
+        row.put("long_object_value", 3L);
+        row.put("short_value", (short) 4);
+        row.put("short_object_value", (short) 5);
+        row.put("double_value", 1.5d);
+        row.put("double_object_value", 2.5d);
+        row.put("float_value", 0.25f);
+        row.put("float_object_value", 0.75f);
+        row.put("boolean_value", 1);
+        row.put("boolean_object_value", 0);
+        row.put("string_value", "text");
+        row.put("blob_value", new byte[]{1, 2});
+        assertRestoreMatchesReflection(MappedRecord.class, row);
+
+        row = new HashMap<>();
+        row.put("_id", 8L);
+        row.put("zone", "east");
+        row.put("amount", 1L << 40);
+        row.put("weight", 2.5d);
+        row.put("name", "unsorted");
+        row.put("blob_data", new byte[]{3, 4});
+        row.put("count", 6);
+        assertRestoreMatchesReflection(UnsortedRecord.class, row);
+    }
+
+    private static <T extends Query> void assertRestoreMatchesReflection(Class<T> clazz, Map<String, Object> row) {
+        EntityMeta<T> meta = ReflectTools.getEntityMeta(clazz);
+        RowMapper<T> mapper = meta.getRowMapper();
+
+        String[] columnNames = mapper.getColumnNames();
+        MatrixCursor cursor = new MatrixCursor(columnNames);
+        Object[] values = new Object[columnNames.length];
+        for (int i = 0; i < columnNames.length; i++) {
+            values[i] = row.get(columnNames[i]);
+        }
+        cursor.addRow(values);
+        // NULL of every column
+        cursor.addRow(new Object[columnNames.length]);
+
+        // indexes of mapper are in the order of its column names
+        int[] allColumns = new int[columnNames.length];
+        int[] skipped = new int[columnNames.length];
+        Set<String> skippedNames = new HashSet<>();
+        for (int i = 0; i < columnNames.length; i++) {
+            allColumns[i] = i;
+            skipped[i] = i % 2 == 0 ? i : -1;
+            if (skipped[i] < 0) {
+                skippedNames.add(columnNames[i]);
+            }
+        }
+
+        while (cursor.moveToNext()) {
+            for (int[] indexes : new int[][]{allColumns, skipped}) {
+                T generated = meta.newInstance();
+                mapper.restore(generated, cursor, indexes);
+
+                // every column of reflection is read by its name
+                T reflected = meta.newInstance();
+                for (ColumnMeta column : meta.getColumns()) {
+                    if (indexes == allColumns || !skippedNames.contains(column.getName())) {
+                        column.read(reflected, cursor, cursor.getColumnIndex(column.getName()));
+                    }
+                }
+                assertSameValues(reflectValues(meta, reflected), reflectValues(meta, generated));
+
+                // the same through the meta, which uses the mapper
+                String[] queryColumns = indexes == allColumns ? null : remainingNames(columnNames, skippedNames);
+                T planned = meta.newBindingPlan(cursor, queryColumns).read(cursor);
+                assertSameValues(reflectValues(meta, reflected), reflectValues(meta, planned));
+            }
+        }
+        cursor.close();
+    }
+
+    @Test
+    public void testValuesRoundTripMatchesReflection() {
+        assertValuesRoundTrip(ReflectTools.getEntityMeta(MappedRecord.class),
+                new MappedRecord(), newFilledRecord());
+        assertValuesRoundTrip(ReflectTools.getEntityMeta(UnsortedRecord.class),
+                new UnsortedRecord(), newUnsortedRecord());
+    }
+
+    @SafeVarargs
+    private static <T extends Query> void assertValuesRoundTrip(EntityMeta<T> meta, T... sources) {
+        RowMapper<T> mapper = meta.getRowMapper();
+
+        // a record with every boxed field null and a filled one
+        for (T source : sources) {
+            Object[] values = new Object[meta.getColumnCount()];
+            mapper.getValues(source, values);
+            Map<String, Object> expected = reflectValues(meta, source);
+            assertSameValues(expected, byName(mapper.getColumnNames(), values));
+            // values of meta are labeled by its own columns
+            assertSameValues(expected, byName(columnNames(meta), meta.getValues(source)));
+
+            T generated = meta.newInstance();
+            mapper.setValues(generated, values);
+            T reflected = meta.newInstance();
+            for (ColumnMeta column : meta.getColumns()) {
+                column.setValue(reflected, expected.get(column.getName()));
+            }
+            assertSameValues(reflectValues(meta, reflected), reflectValues(meta, generated));
+
+            T copy = meta.newInstance();
+            meta.setValues(copy, meta.getValues(source));
+            assertSameValues(expected, reflectValues(meta, copy));
+        }
+    }
+
+    @Test
+    public void testContentValuesMatchesReflection() {
+        MappedRecord saved = newFilledRecord();
+        saved.id = 9;
+        assertContentValuesMatchesReflection(ReflectTools.getEntityMeta(MappedRecord.class),
+                new MappedRecord(), newFilledRecord(), saved);
+
+        UnsortedRecord unsortedSaved = newUnsortedRecord();
+        unsortedSaved.id = 10;
+        assertContentValuesMatchesReflection(ReflectTools.getEntityMeta(UnsortedRecord.class),
+                new UnsortedRecord(), newUnsortedRecord(), unsortedSaved);
+    }
+
+    @SafeVarargs
+    private static <T extends Query> void assertContentValuesMatchesReflection(EntityMeta<T> meta, T... sources) {
+        RowMapper<T> mapper = meta.getRowMapper();
+        for (T source : sources) {
+            ContentValues generated = new ContentValues();
+            mapper.toContentValues(source, generated);
+
+            // the reflection way of Query.toContentValues()
+            ContentValues reflected = new ContentValues();
+            for (ColumnMeta column : meta.getColumns()) {
+                Object value = column.getValue(source);
+                if (column.isId() && (Long) value == Entity.NOT_SAVED) {
+                    continue;
+                }
+                if (value != null) {
+                    Query.putValue(reflected, column.getName(), value);
+                }
+            }
+            assertEquals(reflected, generated);
+        }
+    }
+
+    @Test
+    public void testPrivateFieldFallsBackToReflection() {
+        MatrixCursor cursor = new MatrixCursor(new String[]{"_id", "name", "age"});
+        cursor.addRow(new Object[]{3L, "private", 12});
+        cursor.addRow(new Object[]{4L, null, null});
+        EntityMeta<PrivateFieldRecord> meta = ReflectTools.getEntityMeta(PrivateFieldRecord.class);
+        EntityMeta.BindingPlan<PrivateFieldRecord> plan = meta.newBindingPlan(cursor, null);
+
+        assertTrue(cursor.moveToNext());
+        PrivateFieldRecord record = plan.read(cursor);
+        assertEquals(3L, record.id);
+        assertEquals("private", record.getName());
+        assertEquals(Integer.valueOf(12), record.age);
+
+        // boxed field of NULL column is read as the default value, the same as generated mapper
+        assertTrue(cursor.moveToNext());
+        record = plan.read(cursor);
+        assertNull(record.getName());
+        assertEquals(Integer.valueOf(0), record.age);
+
+        PrivateFieldRecord copy = meta.newInstance();
+        meta.setValues(copy, meta.getValues(record));
+        assertTrue(Arrays.deepEquals(meta.getValues(record), meta.getValues(copy)));
+        cursor.close();
+    }
+
+    @Test
+    public void testFinalFieldFallsBackToReflection() {
+        MatrixCursor cursor = new MatrixCursor(new String[]{"_id", "code", "name"});
+        cursor.addRow(new Object[]{5L, 42L, "final"});
+        EntityMeta<FinalFieldRecord> meta = ReflectTools.getEntityMeta(FinalFieldRecord.class);
+
+        assertTrue(cursor.moveToNext());
+        FinalFieldRecord record = meta.newBindingPlan(cursor, null).read(cursor);
+        Map<String, Object> values = byName(columnNames(meta), meta.getValues(record));
+        assertEquals(5L, values.get("_id"));
+        assertEquals(42L, values.get("code"));
+        assertEquals("final", values.get("name"));
+
+        ContentValues contentValues = record.toContentValues();
+        assertEquals(Long.valueOf(42L), contentValues.getAsLong("code"));
+        assertEquals("final", contentValues.getAsString("name"));
+        cursor.close();
+    }
+
+    private static MappedRecord newFilledRecord() {
+        MappedRecord record = new MappedRecord();
+        record.intValue = -1;
+        record.integerValue = 2;
+        record.longValue = 1L << 40;
+        record.longObjectValue = 3L;
+        record.shortValue = 4;
+        record.shortObjectValue = 5;
+        record.doubleValue = 1.5d;
+        record.doubleObjectValue = 2.5d;
+        record.floatValue = 0.25f;
+        record.floatObjectValue = 0.75f;
+        record.booleanValue = true;
+        record.booleanObjectValue = false;
+        record.stringValue = "text";
+        record.blobValue = new byte[]{1, 2};
+        return record;
+    }
+
+    private static UnsortedRecord newUnsortedRecord() {
+        UnsortedRecord record = new UnsortedRecord();
+        record.zone = "east";
+        record.amount = 1L << 40;
+        record.weight = 2.5d;
+        record.name = "unsorted";
+        record.data = new byte[]{3, 4};
+        record.count = 6;
+        return record;
+    }
+
+    private static String[] columnNames(EntityMeta<?> meta) {
+        String[] names = new String[meta.getColumnCount()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = meta.getColumn(i).getName();
+        }
+        return names;
+    }
+
+    private static String[] remainingNames(String[] names, Set<String> skippedNames) {
+        List<String> remaining = new ArrayList<>();
+        for (String name : names) {
+            if (!skippedNames.contains(name)) {
+                remaining.add(name);
+            }
+        }
+        return remaining.toArray(new String[remaining.size()]);
+    }
+
+    /**
+     * @return values of every column read by reflection, keyed by column name
+     */
+    private static <T extends Query> Map<String, Object> reflectValues(EntityMeta<T> meta, T source) {
+        Map<String, Object> values = new TreeMap<>();
+        for (ColumnMeta column : meta.getColumns()) {
+            values.put(column.getName(), column.getValue(source));
+        }
+        return values;
+    }
+
+    private static Map<String, Object> byName(String[] names, Object[] values) {
+        assertEquals(names.length, values.length);
+        Map<String, Object> result = new TreeMap<>();
+        for (int i = 0; i < names.length; i++) {
+            result.put(names[i], values[i]);
+        }
+        return result;
+    }
+
+    private static void assertSameValues(Map<String, Object> expected, Map<String, Object> actual) {
+        assertEquals(expected.keySet(), actual.keySet());
+        assertTrue(Arrays.deepEquals(expected.values().toArray(), actual.values().toArray()));
+    }
+}
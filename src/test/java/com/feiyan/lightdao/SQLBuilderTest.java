@@ -0,0 +1,125 @@
+package com.feiyan.lightdao;
+
+import com.feiyan.lightdao.tables.MappedRecord;
+import com.feiyan.lightdao.tables.TagRecord;
+import com.feiyan.lightdao.tables.UniqueRecord;
+import com.feiyan.lightdao.tables.UnsortedRecord;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class SQLBuilderTest {
+
+    @Test
+    @Config(sdk = 21)
+    public void testInsertRowsPerStatementIsLimitedByBindArgs() {
+        // 14 columns besides _id
+        assertEquals(SQLBuilder.MAX_BIND_ARGS / 14, SQLBuilder.getInsertRowsPerStatement(MappedRecord.class));
+    }
+
+    @Test
+    @Config(sdk = 21)
+    public void testInsertRowsPerStatementIsLimitedByCompoundSelect() {
+        assertEquals(SQLBuilder.MAX_INSERT_ROWS, SQLBuilder.getInsertRowsPerStatement(TagRecord.class));
+
+        String sql = SQLBuilder.buildInsertSQL(TagRecord.class, SQLBuilder.MAX_INSERT_ROWS).getSql();
+        int rows = 0;
+        for (int i = sql.indexOf("(?)"); i >= 0; i = sql.indexOf("(?)", i + 1)) {
+            rows++;
+        }
+        assertEquals(SQLBuilder.MAX_INSERT_ROWS, rows);
+    }
+
+    @Test
+    @Config(sdk = 15)
+    public void testInsertRowsPerStatementBeforeMultiRowValues() {
+        assertEquals(1, SQLBuilder.getInsertRowsPerStatement(TagRecord.class));
+    }
+
+    @Test
+    @Config(sdk = 30)
+    public void testUpsertWithOnConflict() {
+        assertEquals("INSERT INTO unique_record (_id,code,name) VALUES (?,?,?)"
+                        + " ON CONFLICT(code) DO UPDATE SET name=excluded.name",
+                SQLBuilder.buildUpsertSQL(UniqueRecord.class).getSql());
+    }
+
+    @Test
+    @Config(sdk = 29)
+    public void testUpsertWithoutOnConflictUpdatesThenInserts() {
+        // no INSERT OR REPLACE, which would delete the conflicting row and change its _id
+        assertEquals("INSERT INTO unique_record (_id,code,name) VALUES (?,?,?)",
+                SQLBuilder.buildUpsertSQL(UniqueRecord.class).getSql());
+        assertEquals("UPDATE unique_record SET name=? WHERE code=?",
+                SQLBuilder.buildUpsertUpdateSQL(UniqueRecord.class).getSql());
+        assertEquals("UPDATE tag_record SET tag=? WHERE _id=?",
+                SQLBuilder.buildUpsertUpdateSQL(TagRecord.class).getSql());
+    }
+
+    @Test
+    public void testUpsertUpdateByIdIncludesConflictColumn() {
+        // a saved record changing its unique column is updated by id
+        assertEquals("UPDATE unique_record SET code=?,name=? WHERE _id=?",
+                SQLBuilder.buildUpsertUpdateSQL(UniqueRecord.class, Entity._ID).getSql());
+    }
+
+    @Test
+    @Config(sdk = 21)
+    public void testBulkInsertArgsFollowColumnsOfSql() {
+        UnsortedRecord first = new UnsortedRecord();
+        first.zone = "east";
+        first.amount = 1;
+        first.weight = 1.5d;
+        first.name = "first";
+        first.data = new byte[]{1};
+        first.count = 2;
+        UnsortedRecord second = new UnsortedRecord();
+        second.name = "second";
+
+        List<SQL> sqlList = SQLBuilder.buildBulkInsertSQL(UnsortedRecord.class, Arrays.asList(first, second));
+        assertEquals(1, sqlList.size());
+        String sql = sqlList.get(0).getSql();
+        String[] columns = sql.substring(sql.indexOf('(') + 1, sql.indexOf(')')).split(",");
+        Object[] args = sqlList.get(0).getBindArgsAsArray();
+        assertEquals(2 * columns.length, args.length);
+
+        // every argument is bound to the column of its record named in sql
+        for (int row = 0; row < 2; row++) {
+            UnsortedRecord record = row == 0 ? first : second;
+            for (int i = 0; i < columns.length; i++) {
+                Object arg = args[row * columns.length + i];
+                switch (columns[i]) {
+                    case "zone":
+                        assertEquals(record.zone == null ? "" : record.zone, arg);
+                        break;
+                    case "amount":
+                        assertEquals(record.amount, ((Number) arg).longValue());
+                        break;
+                    case "weight":
+                        assertEquals(record.weight, ((Number) arg).doubleValue(), 0);
+                        break;
+                    case "name":
+                        assertEquals(record.name, arg);
+                        break;
+                    case "blob_data":
+                        assertTrue(Arrays.equals(record.data == null ? new byte[0] : record.data, (byte[]) arg));
+                        break;
+                    case "count":
+                        assertEquals(record.count, ((Number) arg).intValue());
+                        break;
+                    default:
+                        throw new AssertionError("unexpected column " + columns[i]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.feiyan.lightdao;
+
+import com.feiyan.lightdao.tables.TagRecord;
+import com.feiyan.lightdao.tables.UniqueRecord;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Identity map of session, methods tested here don't touch database.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SessionTest {
+
+    private static TagRecord newTag(long id, String tag) {
+        TagRecord record = new TagRecord();
+        record.id = id;
+        record.tag = tag;
+        return record;
+    }
+
+    @Test
+    public void testAttachReturnsInstanceOfSameId() {
+        Session session = new Session(null);
+        TagRecord first = newTag(1, "first");
+        assertSame(first, session.attach(first));
+        assertSame(first, session.attach(newTag(1, "copy")));
+
+        List<TagRecord> attached = session.attachAll(Arrays.asList(newTag(1, "copy"), newTag(2, "second")));
+        assertSame(first, attached.get(0));
+        assertEquals("second", attached.get(1).tag);
+        assertSame(attached.get(1), session.attach(newTag(2, "copy")));
+    }
+
+    @Test
+    public void testIdentityIsPerClass() {
+        Session session = new Session(null);
+        TagRecord tag = session.attach(newTag(1, "tag"));
+        UniqueRecord unique = new UniqueRecord();
+        unique.id = 1;
+        assertSame(unique, session.attach(unique));
+        assertSame(tag, session.attach(newTag(1, "copy")));
+    }
+
+    @Test
+    public void testUnsavedRecordIsNotAttached() {
+        Session session = new Session(null);
+        TagRecord unsaved = newTag(Entity.NOT_SAVED, "new");
+        assertSame(unsaved, session.attach(unsaved));
+        TagRecord other = newTag(Entity.NOT_SAVED, "other");
+        assertSame(other, session.attach(other));
+        // unsaved records are not tracked either
+        assertNull(((Entity) unsaved).loadedValues);
+    }
+
+    @Test
+    public void testAttachTracksChanges() {
+        Session session = new Session(null);
+        TagRecord record = session.attach(newTag(1, "tag"));
+        assertEquals(0, record.toChangedValues().size());
+        record.tag = "changed";
+        assertEquals("changed", record.toChangedValues().getAsString("tag"));
+
+        // attaching again keeps the existing snapshot
+        session.attach(record);
+        assertEquals(1, record.toChangedValues().size());
+    }
+
+    @Test
+    public void testEvictAndClear() {
+        Session session = new Session(null);
+        TagRecord first = session.attach(newTag(1, "first"));
+        session.attach(newTag(2, "second"));
+
+        session.evict(TagRecord.class, 1);
+        TagRecord reloaded = newTag(1, "reloaded");
+        assertSame(reloaded, session.attach(reloaded));
+        assertNotSame(first, reloaded);
+
+        session.clear();
+        TagRecord again = newTag(2, "again");
+        assertSame(again, session.attach(again));
+    }
+}
@@ -0,0 +1,36 @@
+package com.feiyan.lightdao.conditionbuilder;
+
+import android.content.ContentValues;
+import android.database.sqlite.SQLiteException;
+
+import com.feiyan.lightdao.SQLBuilder;
+import com.feiyan.lightdao.tables.TagRecord;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks made before database is touched, the builder has no database here.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ConditionBuilderTest {
+
+    @Test
+    public void testUpdateByIdsWithoutRoomForIds() {
+        ContentValues values = new ContentValues();
+        for (int i = 0; i < SQLBuilder.MAX_BIND_ARGS; i++) {
+            values.put("column_" + i, i);
+        }
+
+        try {
+            new ConditionBuilder<TagRecord>(null).withTable(TagRecord.class).applyUpdateByIds(values, 1L, 2L);
+            fail("values of every bind argument leave no room for ids");
+        } catch (SQLiteException e) {
+            assertTrue(e.getMessage().contains(String.valueOf(SQLBuilder.MAX_BIND_ARGS)));
+        }
+    }
+}
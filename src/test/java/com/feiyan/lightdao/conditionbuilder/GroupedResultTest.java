@@ -0,0 +1,138 @@
+package com.feiyan.lightdao.conditionbuilder;
+
+import android.database.MatrixCursor;
+import android.database.sqlite.SQLiteException;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricTestRunner.class)
+public class GroupedResultTest {
+
+    private static GroupedResult read(Object[]... rows) {
+        MatrixCursor cursor = new MatrixCursor(new String[]{"teacher_id", "avg(age)"});
+        for (Object[] row : rows) {
+            cursor.addRow(row);
+        }
+        try {
+            return GroupedResult.read(cursor, "teacher_id");
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void testLookup() {
+        // rows are ordered by key, NULL key sorts first and is left out
+        GroupedResult result = read(new Object[]{null, 1.0d}, new Object[]{-3L, 2.5d},
+                new Object[]{1L, 10.0d}, new Object[]{1L << 40, 7.0d});
+        assertEquals(3, result.size());
+        assertArrayEquals(new long[]{-3L, 1L, 1L << 40}, result.getKeys());
+        assertArrayEquals(new double[]{2.5d, 10.0d, 7.0d}, result.getValues(), 0);
+        assertEquals(1L, result.keyAt(1));
+        assertEquals(7.0d, result.valueAt(2), 0);
+
+        assertEquals(2.5d, result.get(-3L, 0), 0);
+        assertEquals(10.0d, result.get(1L, 0), 0);
+        assertEquals(-1d, result.get(2L, -1d), 0);
+        assertTrue(result.containsKey(1L << 40));
+        assertTrue(!result.containsKey(0L));
+    }
+
+    @Test
+    public void testEmptyResult() {
+        GroupedResult result = read();
+        assertEquals(0, result.size());
+        assertEquals(5d, result.get(1L, 5d), 0);
+    }
+
+    @Test
+    public void testArraysAreCopied() {
+        GroupedResult result = read(new Object[]{1L, 1.0d});
+        result.getKeys()[0] = 9L;
+        result.getValues()[0] = 9.0d;
+        assertEquals(1.0d, result.get(1L, 0), 0);
+    }
+
+    @Test
+    public void testRejectsNonIntegerKey() {
+        for (Object key : new Object[]{"a", 1.5d}) {
+            try {
+                read(new Object[]{key, 1.0d});
+                fail("key [" + key + "] should be rejected");
+            } catch (SQLiteException e) {
+                assertTrue(e.getMessage().contains("teacher_id"));
+            }
+        }
+    }
+
+    @Test
+    public void testLongValues() {
+        // sums of epoch millis or cents above 2^53 are not exact as double
+        long big = (1L << 53) + 1;
+        GroupedResult result = read(new Object[]{1L, big}, new Object[]{2L, null}, new Object[]{3L, -big});
+        assertArrayEquals(new long[]{big, 0L, -big}, result.getLongValues());
+        assertEquals(big, result.longValueAt(0));
+        assertEquals(-big, result.getLong(3L, 0));
+        assertEquals(-1L, result.getLong(4L, -1L));
+        assertTrue((long) result.get(1L, 0) != big);
+    }
+
+    @Test
+    public void testRejectsLongOfNonIntegerValue() {
+        GroupedResult result = read(new Object[]{1L, 2L}, new Object[]{2L, 2.5d});
+        assertEquals(2.5d, result.get(2L, 0), 0);
+        try {
+            result.getLong(1L, 0);
+            fail("REAL value should not be read as long");
+        } catch (SQLiteException e) {
+            assertTrue(e.getMessage().contains("avg(age)"));
+        }
+    }
+
+    @Test
+    public void testReadLong() {
+        long big = Long.MAX_VALUE - 1;
+        MatrixCursor cursor = new MatrixCursor(new String[]{"sum(age)"});
+        cursor.addRow(new Object[]{big});
+        cursor.addRow(new Object[]{null});
+        cursor.addRow(new Object[]{1.5d});
+        try {
+            cursor.moveToNext();
+            assertEquals(big, Aggregate.readLong(cursor, 0, "sum(age)"));
+            cursor.moveToNext();
+            assertEquals(0L, Aggregate.readLong(cursor, 0, "sum(age)"));
+            cursor.moveToNext();
+            try {
+                Aggregate.readLong(cursor, 0, "sum(age)");
+                fail("REAL result should not be read as long");
+            } catch (SQLiteException e) {
+                assertTrue(e.getMessage().contains("sum(age)"));
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void testCheckClauses() {
+        GroupedResult.checkClauses("teacher_id", null, null);
+        GroupedResult.checkClauses("teacher_id", "teacher_id", " teacher_id ");
+
+        String[][] clauses = {{"age", null}, {null, "age DESC"}, {null, "teacher_id DESC"}};
+        for (String[] clause : clauses) {
+            try {
+                GroupedResult.checkClauses("teacher_id", clause[0], clause[1]);
+                fail("GROUP BY [" + clause[0] + "] ORDER BY [" + clause[1] + "] should be rejected");
+            } catch (SQLiteException e) {
+                // expected
+            }
+        }
+    }
+}
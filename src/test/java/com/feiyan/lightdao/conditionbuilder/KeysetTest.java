@@ -0,0 +1,127 @@
+package com.feiyan.lightdao.conditionbuilder;
+
+import android.database.MatrixCursor;
+import android.database.sqlite.SQLiteException;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricTestRunner.class)
+public class KeysetTest {
+
+    @Test
+    public void testParseAppendsId() {
+        Keyset keyset = Keyset.parse("age DESC, name");
+        assertArrayEquals(new String[]{"age", "name", "_id"}, keyset.getNames());
+        assertEquals("age DESC,name ASC,_id ASC", keyset.buildOrderBy());
+
+        assertEquals("_id DESC", Keyset.parse("_id desc").buildOrderBy());
+        assertEquals("_id ASC", Keyset.parse(null).buildOrderBy());
+    }
+
+    @Test
+    public void testParseRejectsUnsupportedTerm() {
+        for (String orderBy : new String[]{"age RANDOM", "age DESC NULLS LAST", "age,,name"}) {
+            try {
+                Keyset.parse(orderBy);
+                fail("[" + orderBy + "] should be rejected");
+            } catch (SQLiteException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testTokenRoundTrip() {
+        Keyset keyset = Keyset.parse("score DESC, name ASC");
+        MatrixCursor cursor = new MatrixCursor(new String[]{"name", "_id", "score"});
+        cursor.addRow(new Object[]{"名字 \"quoted\"", 1L << 40, 2.5d});
+        cursor.moveToNext();
+
+        String token = keyset.encodeToken(cursor);
+        // URL safe without line breaks
+        assertTrue(!token.contains("+") && !token.contains("/") && !token.contains("\n"));
+
+        Object[] position = keyset.decodeToken(token);
+        assertEquals(3, position.length);
+        assertEquals(2.5d, ((Number) position[0]).doubleValue(), 0);
+        assertEquals("名字 \"quoted\"", position[1]);
+        assertEquals(1L << 40, ((Number) position[2]).longValue());
+        cursor.close();
+    }
+
+    @Test
+    public void testEncodeRejectsNullKey() {
+        Keyset keyset = Keyset.parse("name");
+        MatrixCursor cursor = new MatrixCursor(new String[]{"name", "_id"});
+        cursor.addRow(new Object[]{null, 1L});
+        cursor.moveToNext();
+        try {
+            keyset.encodeToken(cursor);
+            fail("null sort key should be rejected");
+        } catch (SQLiteException e) {
+            // expected
+        }
+        cursor.close();
+    }
+
+    @Test
+    public void testDecodeRejectsBadToken() {
+        Keyset keyset = Keyset.parse("age");
+        MatrixCursor cursor = new MatrixCursor(new String[]{"_id"});
+        cursor.addRow(new Object[]{1L});
+        cursor.moveToNext();
+        // token of other sort keys
+        String token = Keyset.parse(null).encodeToken(cursor);
+        cursor.close();
+
+        for (String bad : new String[]{token, "not a token", "W10"}) {
+            try {
+                keyset.decodeToken(bad);
+                fail("[" + bad + "] should be rejected");
+            } catch (SQLiteException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    @Config(sdk = 26)
+    public void testSameDirectionUsesRowValues() {
+        List<Object> args = new ArrayList<>();
+        assertEquals("(age,_id) > (?,?)", Keyset.parse("age").buildPredicate(new Object[]{5, 9L}, args));
+        assertEquals(Arrays.<Object>asList(5, 9L), args);
+
+        args.clear();
+        assertEquals("(age,_id) < (?,?)", Keyset.parse("age DESC, _id DESC").buildPredicate(new Object[]{5, 9L}, args));
+    }
+
+    @Test
+    @Config(sdk = 26)
+    public void testMixedDirectionExpandsPredicate() {
+        List<Object> args = new ArrayList<>();
+        String predicate = Keyset.parse("age DESC, name ASC").buildPredicate(new Object[]{5, "b", 9L}, args);
+        assertEquals("age <= ? AND (age < ? OR (name >= ? AND (name > ? OR (_id > ?))))", predicate);
+        assertEquals(Arrays.<Object>asList(5, 5, "b", "b", 9L), args);
+    }
+
+    @Test
+    @Config(sdk = 21)
+    public void testSameDirectionExpandsPredicateWithoutRowValues() {
+        List<Object> args = new ArrayList<>();
+        String predicate = Keyset.parse("age").buildPredicate(new Object[]{5, 9L}, args);
+        assertEquals("age >= ? AND (age > ? OR (_id > ?))", predicate);
+        assertEquals(Arrays.<Object>asList(5, 5, 9L), args);
+    }
+}
@@ -0,0 +1,69 @@
+package com.feiyan.lightdao.conditionbuilder;
+
+import com.feiyan.lightdao.tables.MappedRecord;
+import com.feiyan.lightdao.tables.TagRecord;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+@RunWith(RobolectricTestRunner.class)
+public class QueryShapeCacheTest {
+
+    @Before
+    public void setUp() {
+        QueryShapeCache.clear();
+    }
+
+    private static QueryShapeCache.Shape shape(Class<?> clazz, String where, boolean limit) {
+        return new QueryShapeCache.Shape(clazz, new String[]{"_id", "tag"}, where, null, null,
+                "_id ASC", false, limit);
+    }
+
+    @Test
+    public void testShapeEquality() {
+        assertEquals(shape(TagRecord.class, "tag = ?", false), shape(TagRecord.class, "tag = ?", false));
+        assertEquals(shape(TagRecord.class, null, false).hashCode(), shape(TagRecord.class, null, false).hashCode());
+
+        assertNotEquals(shape(TagRecord.class, "tag = ?", false), shape(MappedRecord.class, "tag = ?", false));
+        assertNotEquals(shape(TagRecord.class, "tag = ?", false), shape(TagRecord.class, "tag > ?", false));
+        assertNotEquals(shape(TagRecord.class, "tag = ?", false), shape(TagRecord.class, "tag = ?", true));
+        assertNotEquals(shape(TagRecord.class, null, false), new QueryShapeCache.Shape(TagRecord.class,
+                new String[]{"_id"}, null, null, null, "_id ASC", false, false));
+    }
+
+    @Test
+    public void testShapeCopiesColumns() {
+        String[] columns = {"_id", "tag"};
+        QueryShapeCache.Shape shape = new QueryShapeCache.Shape(TagRecord.class, columns, null, null, null,
+                null, false, false);
+        columns[1] = "other";
+        assertEquals(new QueryShapeCache.Shape(TagRecord.class, new String[]{"_id", "tag"}, null, null, null,
+                null, false, false), shape);
+    }
+
+    @Test
+    public void testHitAndMiss() {
+        int hits = QueryShapeCache.getHitCount();
+        int misses = QueryShapeCache.getMissCount();
+
+        assertNull(QueryShapeCache.get(shape(TagRecord.class, "tag = ?", false)));
+        QueryShapeCache.put(shape(TagRecord.class, "tag = ?", false), "SELECT _id, tag FROM tag_record WHERE tag = ?");
+
+        // another query of the same shape, only bind arguments differ
+        assertEquals("SELECT _id, tag FROM tag_record WHERE tag = ?",
+                QueryShapeCache.get(shape(TagRecord.class, "tag = ?", false)));
+        assertNull(QueryShapeCache.get(shape(TagRecord.class, "tag = ?", true)));
+
+        assertEquals(hits + 1, QueryShapeCache.getHitCount());
+        assertEquals(misses + 2, QueryShapeCache.getMissCount());
+
+        QueryShapeCache.clear();
+        assertNull(QueryShapeCache.get(shape(TagRecord.class, "tag = ?", false)));
+    }
+}
@@ -0,0 +1,21 @@
+package com.feiyan.lightdao.tables;
+
+import com.feiyan.lightdao.Entity;
+import com.feiyan.lightdao.annotation.Column;
+import com.feiyan.lightdao.annotation.Table;
+
+/**
+ * Table with a final field, no RowMapper is generated and reflection is used.
+ */
+@Table("final_field_record")
+public class FinalFieldRecord extends Entity {
+    @Column(name = "code")
+    public final Long code;
+
+    @Column(name = "name")
+    public String name;
+
+    public FinalFieldRecord() {
+        this.code = null;
+    }
+}
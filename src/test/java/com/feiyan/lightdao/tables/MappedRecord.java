@@ -0,0 +1,53 @@
+package com.feiyan.lightdao.tables;
+
+import com.feiyan.lightdao.Entity;
+import com.feiyan.lightdao.annotation.Column;
+import com.feiyan.lightdao.annotation.Table;
+
+/**
+ * Table with a field of every supported type, its RowMapper is generated.
+ */
+@Table("mapped_record")
+public class MappedRecord extends Entity {
+    @Column(name = "int_value")
+    public int intValue;
+
+    @Column(name = "integer_value")
+    public Integer integerValue;
+
+    @Column(name = "long_value")
+    public long longValue;
+
+    @Column(name = "long_object_value")
+    public Long longObjectValue;
+
+    @Column(name = "short_value")
+    public short shortValue;
+
+    @Column(name = "short_object_value")
+    public Short shortObjectValue;
+
+    @Column(name = "double_value")
+    public double doubleValue;
+
+    @Column(name = "double_object_value")
+    public Double doubleObjectValue;
+
+    @Column(name = "float_value")
+    public float floatValue;
+
+    @Column(name = "float_object_value")
+    public Float floatObjectValue;
+
+    @Column(name = "boolean_value")
+    public boolean booleanValue;
+
+    @Column(name = "boolean_object_value")
+    public Boolean booleanObjectValue;
+
+    @Column(name = "string_value")
+    public String stringValue;
+
+    @Column(name = "blob_value")
+    public byte[] blobValue;
+}
@@ -0,0 +1,25 @@
+package com.feiyan.lightdao.tables;
+
+import com.feiyan.lightdao.Entity;
+import com.feiyan.lightdao.annotation.Column;
+import com.feiyan.lightdao.annotation.Table;
+
+/**
+ * Table with a private field, no RowMapper is generated and reflection is used.
+ */
+@Table("private_field_record")
+public class PrivateFieldRecord extends Entity {
+    @Column(name = "name")
+    private String name;
+
+    @Column(name = "age")
+    public Integer age;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+}
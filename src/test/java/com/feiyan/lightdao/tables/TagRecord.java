@@ -0,0 +1,14 @@
+package com.feiyan.lightdao.tables;
+
+import com.feiyan.lightdao.Entity;
+import com.feiyan.lightdao.annotation.Column;
+import com.feiyan.lightdao.annotation.Table;
+
+/**
+ * Table with one column besides _id.
+ */
+@Table("tag_record")
+public class TagRecord extends Entity {
+    @Column(name = "tag")
+    public String tag;
+}
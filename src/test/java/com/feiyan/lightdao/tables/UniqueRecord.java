@@ -0,0 +1,17 @@
+package com.feiyan.lightdao.tables;
+
+import com.feiyan.lightdao.Entity;
+import com.feiyan.lightdao.annotation.Column;
+import com.feiyan.lightdao.annotation.Table;
+
+/**
+ * Table with a unique column, which is the conflict target of upsert.
+ */
+@Table("unique_record")
+public class UniqueRecord extends Entity {
+    @Column(name = "code", unique = true)
+    public String code;
+
+    @Column(name = "name")
+    public String name;
+}
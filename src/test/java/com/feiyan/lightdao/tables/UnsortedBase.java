@@ -0,0 +1,15 @@
+package com.feiyan.lightdao.tables;
+
+import com.feiyan.lightdao.Entity;
+import com.feiyan.lightdao.annotation.Column;
+
+/**
+ * Superclass of {@link UnsortedRecord}, its fields are not declared in alphabetical order either.
+ */
+public class UnsortedBase extends Entity {
+    @Column(name = "zone")
+    public String zone;
+
+    @Column(name = "amount")
+    public long amount;
+}
@@ -0,0 +1,23 @@
+package com.feiyan.lightdao.tables;
+
+import com.feiyan.lightdao.annotation.Column;
+import com.feiyan.lightdao.annotation.Table;
+
+/**
+ * Table whose fields are not declared in alphabetical order, reflection on ART returns them
+ * sorted by name, which is not the order of its generated RowMapper.
+ */
+@Table("unsorted_record")
+public class UnsortedRecord extends UnsortedBase {
+    @Column(name = "weight")
+    public double weight;
+
+    @Column(name = "name")
+    public String name;
+
+    @Column(name = "blob_data")
+    public byte[] data;
+
+    @Column(name = "count")
+    public int count;
+}